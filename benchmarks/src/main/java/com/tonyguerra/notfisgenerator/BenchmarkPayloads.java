@@ -0,0 +1,77 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gera payloads sintéticos com todos os campos preenchidos. Um cabeçalho por
+ * registro e o restante das linhas concentrado no registro de nota fiscal
+ * (313 na 3.1, 505 na 5.0), como nos arquivos reais.
+ */
+final class BenchmarkPayloads {
+
+    private BenchmarkPayloads() {
+    }
+
+    static String invoiceIdentifier(NotfisType type) {
+        return type == NotfisType.VERSION31 ? "313" : "505";
+    }
+
+    static NotfisPayload payload(NotfisType type, int lines) throws Exception {
+        final NotfisLayout layout = NotfisLayouts.get(type);
+        final String invoice = invoiceIdentifier(type);
+
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        int remaining = lines;
+
+        for (final String identifier : layout.getIdentifiers()) {
+            if (!identifier.equals(invoice)) {
+                records.put(identifier, lines(layout.getRecord(identifier), 1));
+                remaining--;
+            }
+        }
+
+        records.put(invoice, lines(layout.getRecord(invoice), Math.max(1, remaining)));
+        return new NotfisPayload(records);
+    }
+
+    static List<String> sampleValues(int count) {
+        final String[] samples = {
+                "João da Silva Transportes Ltda",
+                "Rua São Sebastião, nº 1.234 - Centro",
+                "AVENIDA PAULISTA 1000",
+                "Indústria & Comércio de Peças S/A",
+                "0001234567890",
+        };
+
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(samples[i % samples.length]);
+        }
+        return values;
+    }
+
+    private static List<List<NotfisParam>> lines(NotfisRecordLayout record, int count) {
+        final List<List<NotfisParam>> lines = new ArrayList<>(count);
+
+        for (int l = 0; l < count; l++) {
+            final List<NotfisParam> params = new ArrayList<>(record.getFieldCount());
+            for (int f = 0; f < record.getFieldCount(); f++) {
+                final Object value;
+                if (f == 0) {
+                    value = record.getIdentifier();
+                } else if (record.getFieldFormat(f) == NotfisFieldType.NUMERIC) {
+                    value = (long) (l * 31 + f);
+                } else {
+                    value = "Valor " + l + " Campo " + f;
+                }
+                params.add(new NotfisParam(record.getFieldName(f), value));
+            }
+            lines.add(params);
+        }
+
+        return lines;
+    }
+}
@@ -0,0 +1,45 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Custo de compilar o layout gerado no build, de ler e compilar o JSON (sem
+ * cache) e de obtê-lo do registro global.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param({ "VERSION31", "VERSION50" })
+    public NotfisType type;
+
+    @Benchmark
+    public NotfisLayout loadConfigFile() throws Exception {
+        return NotfisLayoutLoader.load(type);
+    }
+
+    @Benchmark
+    public NotfisLayout loadJson() throws Exception {
+        return NotfisLayoutLoader.loadJson(type);
+    }
+
+    @Benchmark
+    public NotfisLayout cachedLayout() throws Exception {
+        return NotfisLayouts.get(type);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mede cada etapa da geração separadamente: associação/validação, ordenação,
+ * renderização e o fluxo completo.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar PipelineBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class PipelineBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int lines;
+
+    @Param({ "VERSION31", "VERSION50" })
+    public NotfisType type;
+
+    private NotfisLayout layout;
+    private NotfisPayload payload;
+    private List<NotfisLine> bound;
+    private List<NotfisLine> ordered;
+    private NotfisWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        layout = NotfisLayouts.get(type);
+        payload = BenchmarkPayloads.payload(type, lines);
+        bound = NotfisWriter.checkAllFields(layout, payload);
+        ordered = NotfisLine.orderLines(bound);
+        writer = new NotfisWriter(type);
+    }
+
+    @Benchmark
+    public List<NotfisLine> checkAllFields() throws Exception {
+        return NotfisWriter.checkAllFields(layout, payload);
+    }
+
+    @Benchmark
+    public List<NotfisLine> orderLines() {
+        return NotfisLine.orderLines(bound);
+    }
+
+    @Benchmark
+    public List<NotfisLine> orderLinesLegacy() {
+        return NotfisLine.orderLinesLegacy(bound);
+    }
+
+    @Benchmark
+    public void render() throws Exception {
+        NotfisRenderer.render(layout, ordered, OutputStream.nullOutputStream(), NotfisWriterOptions.defaults());
+    }
+
+    @Benchmark
+    public void writeFileToStream() throws Exception {
+        writer.writeFileToStream(payload, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,56 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Sanitização de valores alfanuméricos: tabela direto no buffer versus a
+ * implementação original com duas expressões regulares.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SanitizerBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int values;
+
+    private List<String> samples;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        samples = BenchmarkPayloads.sampleValues(values);
+        buffer = new byte[64];
+    }
+
+    @Benchmark
+    public void tableToBuffer(Blackhole bh) {
+        for (final String value : samples) {
+            bh.consume(NotfisSanitizer.ASCII.write(value, buffer, 0, buffer.length));
+        }
+    }
+
+    @Benchmark
+    public void regexReplaceAll(Blackhole bh) {
+        for (final String value : samples) {
+            bh.consume(value.replaceAll("[^\\p{ASCII}]", "").replaceAll("[^a-zA-Z0-9\\s]", ""));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Gera, no build, a classe {@code NotfisGeneratedLayouts} com os layouts de
+ * cada {@code NotfisType} como código Java, para que em tempo de execução não
+ * seja preciso ler nem interpretar JSON.
+ *
+ * Executado pelo exec-maven-plugin na fase generate-sources, como programa de
+ * arquivo único (java NotfisLayoutGenerator.java):
+ *
+ * <pre>
+ * NotfisLayoutGenerator &lt;diretório de saída&gt; VERSION31=notfis31.json VERSION50=notfis50.json
+ * </pre>
+ */
+public final class NotfisLayoutGenerator {
+    private static final String PACKAGE = "com.tonyguerra.notfisgenerator";
+    private static final String CLASS_NAME = "NotfisGeneratedLayouts";
+
+    private NotfisLayoutGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("uso: NotfisLayoutGenerator <sa\u00edda> TIPO=arquivo.json ...");
+        }
+
+        final Map<String, Map<String, List<Field>>> layouts = new LinkedHashMap<>();
+        final List<String> sources = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            final int eq = args[i].indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("argumento inv\u00e1lido: " + args[i]);
+            }
+            final Path json = Paths.get(args[i].substring(eq + 1));
+            layouts.put(args[i].substring(0, eq), parse(json));
+            sources.add(json.getFileName().toString());
+        }
+
+        final Path dir = Paths.get(args[0]).resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(dir);
+
+        try (Writer out = Files.newBufferedWriter(dir.resolve(CLASS_NAME + ".java"), StandardCharsets.UTF_8)) {
+            write(out, layouts, sources);
+        }
+    }
+
+    private static Map<String, List<Field>> parse(Path json) throws IOException {
+        final Map<String, List<Field>> layout = new LinkedHashMap<>();
+
+        try (JsonParser parser = new JsonFactory().createParser(json.toFile())) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String identifier = parser.getCurrentName();
+                final List<Field> fields = new ArrayList<>();
+
+                if (parser.nextToken() != JsonToken.VALUE_NULL) {
+                    expect(parser.currentToken(), JsonToken.START_ARRAY, parser);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        // aceita tanto [ {campo}, ... ] quanto [ [ {campo}, ... ] ]
+                        if (parser.currentToken() == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                                fields.add(readField(parser));
+                            }
+                        } else {
+                            fields.add(readField(parser));
+                        }
+                    }
+                }
+
+                layout.put(identifier, fields);
+            }
+        }
+
+        return layout;
+    }
+
+    private static Field readField(JsonParser parser) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT, parser);
+
+        final Field field = new Field();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (key) {
+                case "name":
+                    field.name = parser.getValueAsString();
+                    break;
+                case "format":
+                    field.numeric = !"A".equalsIgnoreCase(parser.getValueAsString("A"));
+                    break;
+                case "position":
+                    field.position = parser.getValueAsInt();
+                    break;
+                case "size":
+                    field.size = parser.getValueAsInt();
+                    break;
+                case "mandatory":
+                    field.mandatory = parser.getValueAsBoolean();
+                    break;
+                case "decimals":
+                    field.decimals = parser.getValueAsInt();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (field.name == null) {
+            throw new IOException("Campo 'name' ausente em " + parser.getCurrentLocation());
+        }
+        return field;
+    }
+
+    private static void write(Writer out, Map<String, Map<String, List<Field>>> layouts, List<String> sources)
+            throws IOException {
+        out.write("package " + PACKAGE + ";\n\n");
+        out.write("import java.util.Arrays;\n");
+        out.write("import java.util.HashMap;\n");
+        out.write("import java.util.List;\n");
+        out.write("import java.util.Map;\n\n");
+        out.write("/**\n");
+        out.write(" * Layouts gerados no build a partir de " + String.join(", ", sources) + ".\n");
+        out.write(" * N\u00e3o editar: gerado por src/build/java/NotfisLayoutGenerator.java.\n");
+        out.write(" */\n");
+        out.write("final class " + CLASS_NAME + " {\n\n");
+        out.write("    private " + CLASS_NAME + "() {\n    }\n\n");
+
+        out.write("    /**\n     * Layout do tipo informado, ou {@code null} se n\u00e3o foi gerado.\n     */\n");
+        out.write("    static Map<String, List<NotfisConfigField>> get(NotfisType type) {\n");
+        out.write("        switch (type) {\n");
+        for (final String type : layouts.keySet()) {
+            out.write("            case " + type + ":\n");
+            out.write("                return " + method(type) + "();\n");
+        }
+        out.write("            default:\n");
+        out.write("                return null;\n");
+        out.write("        }\n");
+        out.write("    }\n");
+
+        for (final Map.Entry<String, Map<String, List<Field>>> layout : layouts.entrySet()) {
+            final String method = method(layout.getKey());
+
+            out.write("\n    private static Map<String, List<NotfisConfigField>> " + method + "() {\n");
+            out.write("        final Map<String, List<NotfisConfigField>> layout = new HashMap<>();\n");
+            for (final String identifier : layout.getValue().keySet()) {
+                out.write("        layout.put(" + literal(identifier) + ", " + method + "_" + identifier + "());\n");
+            }
+            out.write("        return layout;\n");
+            out.write("    }\n");
+
+            // um método por registro, para não se aproximar do limite de 64 KiB por método
+            for (final Map.Entry<String, List<Field>> record : layout.getValue().entrySet()) {
+                out.write("\n    private static List<NotfisConfigField> " + method + "_" + record.getKey() + "() {\n");
+                out.write("        return Arrays.asList(");
+                String separator = "\n";
+                for (final Field f : record.getValue()) {
+                    out.write(separator);
+                    out.write("                field(" + literal(f.name) + ", " + f.numeric + ", " + f.position + ", "
+                            + f.size + ", " + f.mandatory + ", " + f.decimals + ")");
+                    separator = ",\n";
+                }
+                out.write(");\n");
+                out.write("    }\n");
+            }
+        }
+
+        out.write("\n    private static NotfisConfigField field(String name, boolean numeric, int position, int size,\n");
+        out.write("            boolean mandatory, int decimals) {\n");
+        out.write("        return new NotfisConfigField(name,\n");
+        out.write("                numeric ? NotfisFieldType.NUMERIC : NotfisFieldType.ALPHANUMERIC,\n");
+        out.write("                (short) position, (short) size, mandatory, (short) decimals);\n");
+        out.write("    }\n");
+        out.write("}\n");
+    }
+
+    private static String method(String type) {
+        return type.toLowerCase(java.util.Locale.ROOT);
+    }
+
+    /**
+     * Literal Java só com ASCII: o resto vira escape unicode, para os nomes
+     * dos campos não dependerem do encoding do build.
+     */
+    private static String literal(String value) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, JsonParser parser) throws IOException {
+        if (actual != expected) {
+            throw new IOException("JSON inv\u00e1lido: esperado " + expected + " mas encontrado " + actual
+                    + " em " + parser.getCurrentLocation());
+        }
+    }
+
+    private static final class Field {
+        private String name;
+        private boolean numeric;
+        private int position;
+        private int size;
+        private boolean mandatory;
+        private int decimals;
+    }
+}
@@ -0,0 +1,141 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Ponto de retomada de uma {@link NotfisSession}: quantas linhas e bytes já
+ * estão gravados e confirmados em disco, e o total de linhas por
+ * identificador de registro.
+ */
+public final class NotfisCheckpoint {
+    static final NotfisCheckpoint EMPTY = new NotfisCheckpoint(0L, 0L, Collections.<String, Long>emptyMap());
+
+    private static final String LINES = "lines";
+    private static final String BYTES = "bytes";
+    private static final String RECORD_PREFIX = "record.";
+
+    private final long lineCount;
+    private final long byteOffset;
+    private final Map<String, Long> recordCounts;
+
+    NotfisCheckpoint(long lineCount, long byteOffset, Map<String, Long> recordCounts) {
+        this.lineCount = lineCount;
+        this.byteOffset = byteOffset;
+        this.recordCounts = Collections.unmodifiableMap(new TreeMap<String, Long>(recordCounts));
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Tamanho do arquivo confirmado no checkpoint; ao retomar, o que houver
+     * depois dessa posição é descartado.
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public Map<String, Long> getRecordCounts() {
+        return recordCounts;
+    }
+
+    public long getRecordCount(String identifier) {
+        final Long count = recordCounts.get(identifier);
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * Grava o checkpoint em um arquivo temporário, sincronizado com o disco,
+     * e o move por cima de {@code path}, para nunca deixar um checkpoint pela
+     * metade.
+     */
+    void store(Path path) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(LINES, Long.toString(lineCount));
+        properties.setProperty(BYTES, Long.toString(byteOffset));
+        for (Map.Entry<String, Long> entry : recordCounts.entrySet()) {
+            properties.setProperty(RECORD_PREFIX + entry.getKey(), Long.toString(entry.getValue()));
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        properties.store(bytes, "notfis checkpoint");
+
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // sem isso a troca de nome pode sobreviver a uma queda e o conteúdo não
+            channel.force(true);
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Sincroniza a entrada do diretório, para que a troca de nome também
+     * chegue ao disco. Nem todo sistema permite abrir um diretório (ex:
+     * Windows); nesse caso fica por conta do sistema de arquivos.
+     */
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // não suportado
+        }
+    }
+
+    static NotfisCheckpoint load(Path path) throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(path)) {
+            properties.load(is);
+        }
+
+        final Map<String, Long> recordCounts = new TreeMap<String, Long>();
+        for (final String name : properties.stringPropertyNames()) {
+            if (name.startsWith(RECORD_PREFIX)) {
+                recordCounts.put(name.substring(RECORD_PREFIX.length()), parse(properties, name));
+            }
+        }
+
+        return new NotfisCheckpoint(parse(properties, LINES), parse(properties, BYTES), recordCounts);
+    }
+
+    private static long parse(Properties properties, String name) throws IOException {
+        final String value = properties.getProperty(name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Checkpoint inválido: " + name + "=" + value, ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NotfisCheckpoint[lines=" + lineCount + ", bytes=" + byteOffset + ", records=" + recordCounts + "]";
+    }
+}
@@ -0,0 +1,24 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Associa um atributo, ou um método sem parâmetros, ao campo de mesmo nome
+ * do registro, por exemplo {@code @NotfisColumn("PESO TOTAL DA MERCADORIA")}.
+ * Valores nulos deixam o campo em branco.
+ *
+ * @see NotfisRecord
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface NotfisColumn {
+    /**
+     * Nome do campo no layout, exatamente como na configuração.
+     */
+    String value();
+}
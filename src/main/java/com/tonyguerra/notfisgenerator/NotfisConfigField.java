@@ -6,13 +6,24 @@ public final class NotfisConfigField {
     private final short position;
     private final short size;
     private final boolean mandatory;
+    private final short decimals;
 
     public NotfisConfigField(String name, NotfisFieldType format, short position, short size, boolean mandatory) {
+        this(name, format, position, size, mandatory, (short) 0);
+    }
+
+    /**
+     * @param decimals casas decimais implícitas de campos numéricos (ex: 2 para
+     *                 valores monetários, em que 12.5 vira "1250")
+     */
+    public NotfisConfigField(String name, NotfisFieldType format, short position, short size, boolean mandatory,
+            short decimals) {
         this.name = name;
         this.format = format;
         this.position = position;
         this.size = size;
         this.mandatory = mandatory;
+        this.decimals = decimals;
     }
 
     public String getName() {
@@ -34,4 +45,8 @@ public final class NotfisConfigField {
     public boolean isMandatory() {
         return mandatory;
     }
+
+    public short getDecimals() {
+        return decimals;
+    }
 }
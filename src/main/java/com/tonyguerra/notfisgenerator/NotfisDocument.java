@@ -0,0 +1,192 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Documento notfis escrito em streaming, na ordem hierárquica do layout
+ * (ex: 000 → 310 → 311 → 312 → 313 → 314 … → 318). Cada linha é validada
+ * contra a {@link NotfisHierarchy} e escrita no momento em que é adicionada,
+ * sem guardar o arquivo em memória nem passar por
+ * {@link NotfisLine#orderLines}.
+ *
+ * <pre>
+ * try (NotfisDocument doc = writer.openDocument(out)) {
+ *     doc.add(doc.record("000").set(...).build());
+ *     doc.add(doc.record("310").set(...).build());
+ *     for (Invoice invoice : invoices) {
+ *         doc.addObject(invoice); // classe anotada com &#64;NotfisRecord("313")
+ *     }
+ * }
+ * </pre>
+ *
+ * O {@link OutputStream} não é fechado. Não é thread-safe.
+ */
+public final class NotfisDocument implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final NotfisLayout layout;
+    private final NotfisHierarchy hierarchy;
+    private final NotfisWriterOptions options;
+    private final OutputStream outputStream;
+    private final NotfisRenderStats stats;
+    private final ArrayDeque<String> open = new ArrayDeque<String>();
+    private byte[] buffer;
+    private long lineCount;
+    private boolean closed;
+
+    NotfisDocument(NotfisLayout layout, NotfisHierarchy hierarchy, NotfisWriterOptions options,
+            OutputStream outputStream) {
+        this.layout = layout;
+        this.hierarchy = hierarchy;
+        this.options = options;
+        this.outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        this.stats = options.getListener() != NotfisListener.NOOP ? new NotfisRenderStats() : null;
+        this.buffer = new byte[layout.getMaxWidth() + options.getLineTerminator().length()];
+    }
+
+    /**
+     * Builder de linhas do identificador informado, para usar com
+     * {@link #add(NotfisLine)}.
+     */
+    public NotfisRecordBuilder record(String identifier) throws NotfisException {
+        final NotfisRecordLayout record = layout.getRecord(identifier);
+        if (record == null) {
+            throw new NotfisException("Identificador de registro não encontrado na configuração: " + identifier);
+        }
+        return new NotfisRecordBuilder(record, options.getSanitizer());
+    }
+
+    /**
+     * Valida a posição da linha na hierarquia e a escreve. O contexto só
+     * avança depois da escrita: se a linha for recusada ou a escrita falhar,
+     * o documento continua no mesmo ponto.
+     */
+    public NotfisDocument add(NotfisLine line) throws NotfisException {
+        if (closed) {
+            throw new NotfisException("Documento encerrado.");
+        }
+        if (line == null || line.getLayout() == null) {
+            throw new NotfisException("Linha sem layout; use NotfisDocument.record para montá-la.");
+        }
+
+        final NotfisRecordLayout record = line.getLayout();
+        final String identifier = record.getIdentifier();
+        if (layout.getRecord(identifier) != record) {
+            throw new NotfisException("Linha montada com outro layout: " + identifier);
+        }
+
+        final int closing = locate(identifier);
+        write(line);
+
+        for (int i = 0; i < closing; i++) {
+            open.pop();
+        }
+        open.push(identifier);
+        return this;
+    }
+
+    /**
+     * Converte um objeto anotado com {@link NotfisRecord} e o adiciona.
+     *
+     * @see NotfisMapper
+     */
+    public NotfisDocument addObject(Object source) throws NotfisException {
+        return add(layout.getMapper().toLine(source));
+    }
+
+    /**
+     * Quantos contextos abertos a linha fecha até chegar ao pai, sem alterar
+     * a pilha; lança se a linha estiver fora de ordem.
+     */
+    private int locate(String identifier) throws NotfisException {
+        if (open.isEmpty()) {
+            if (!identifier.equals(hierarchy.getRoot())) {
+                throw new NotfisException("O documento deve começar pelo registro " + hierarchy.getRoot()
+                        + ", mas recebeu " + identifier);
+            }
+            return 0;
+        }
+
+        final String parent = hierarchy.getParent(identifier);
+        if (parent == null) {
+            throw new NotfisException(identifier.equals(hierarchy.getRoot())
+                    ? "O registro " + identifier + " só pode aparecer uma vez, no início."
+                    : "Registro " + identifier + " não faz parte da hierarquia do layout.");
+        }
+
+        // se o pai não estiver aberto, a linha está fora de ordem
+        int depth = 0;
+        for (final Iterator<String> it = open.iterator(); it.hasNext(); depth++) {
+            if (it.next().equals(parent)) {
+                return depth;
+            }
+        }
+
+        throw new NotfisException("Registro " + identifier + " fora de ordem: deve vir dentro de um registro "
+                + parent + " (contexto atual: " + open.peek() + ")");
+    }
+
+    private void write(NotfisLine line) throws NotfisException {
+        final NotfisRecordLayout record = line.getLayout();
+        final NotfisLineTerminator terminator = options.getLineTerminator();
+        final int width = record.getWidth();
+        if (width == 0) {
+            return;
+        }
+        final int length = width + terminator.length();
+        if (length > buffer.length) {
+            buffer = new byte[length];
+        }
+
+        NotfisRenderer.renderLine(line, buffer, 0, options.getRenderCache(), options.getSanitizer(), stats);
+        terminator.writeTo(buffer, width);
+        if (stats != null) {
+            stats.countLine(record, length);
+        }
+
+        try {
+            outputStream.write(buffer, 0, length);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao escrever no OutputStream.", ex);
+        }
+        lineCount++;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Descarrega o que ainda está em buffer no {@link OutputStream}.
+     */
+    public void flush() throws NotfisException {
+        try {
+            outputStream.flush();
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao escrever no OutputStream.", ex);
+        }
+    }
+
+    /**
+     * Descarrega o buffer e reporta os contadores ao listener. O
+     * {@link OutputStream} não é fechado.
+     */
+    @Override
+    public void close() throws NotfisException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        flush();
+        if (stats != null) {
+            stats.report(options.getListener());
+        }
+    }
+}
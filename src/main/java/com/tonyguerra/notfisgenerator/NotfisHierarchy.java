@@ -0,0 +1,111 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Hierarquia dos registros de um layout: cada identificador tem um único
+ * registro pai, e o registro raiz (000) abre o arquivo. Usada por
+ * {@link NotfisDocument} para validar a sequência das linhas à medida que
+ * são escritas.
+ *
+ * Registros irmãos podem vir em qualquer ordem e quantidade; só a relação
+ * pai/filho é verificada.
+ */
+public final class NotfisHierarchy {
+    /**
+     * 000 → 310 → 311 → 312 → 313 → (333, 314, 315, 316, 317); 318 fecha o 311.
+     */
+    public static final NotfisHierarchy VERSION31 = new NotfisHierarchy("000", parents(
+            "310", "000",
+            "311", "310",
+            "312", "311",
+            "313", "312",
+            "333", "313",
+            "314", "313",
+            "315", "313",
+            "316", "313",
+            "317", "313",
+            "318", "311"));
+
+    /**
+     * 000 → 500 → 501 → (502, 503 → (504, 505 → (506, 507, 508, 509, 511,
+     * 513, 514, 515))); 519 fecha o 501.
+     */
+    public static final NotfisHierarchy VERSION50 = new NotfisHierarchy("000", parents(
+            "500", "000",
+            "501", "500",
+            "502", "501",
+            "503", "501",
+            "504", "503",
+            "505", "503",
+            "506", "505",
+            "507", "505",
+            "508", "505",
+            "509", "505",
+            "511", "505",
+            "513", "505",
+            "514", "505",
+            "515", "505",
+            "519", "501"));
+
+    private final String root;
+    private final Map<String, String> parents;
+
+    private NotfisHierarchy(String root, Map<String, String> parents) {
+        this.root = root;
+        this.parents = Collections.unmodifiableMap(parents);
+    }
+
+    /**
+     * Hierarquia para layouts próprios.
+     *
+     * @param parents pai de cada identificador, exceto a raiz
+     */
+    public static NotfisHierarchy of(String root, Map<String, String> parents) throws NotfisException {
+        if (root == null || parents == null) {
+            throw new NotfisException("Hierarquia nula.");
+        }
+        if (parents.containsKey(root)) {
+            throw new NotfisException("O registro raiz " + root + " não pode ter pai.");
+        }
+        return new NotfisHierarchy(root, new HashMap<String, String>(parents));
+    }
+
+    static NotfisHierarchy forType(NotfisType type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case VERSION31:
+                return VERSION31;
+            case VERSION50:
+                return VERSION50;
+            default:
+                return null;
+        }
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * Pai do identificador, ou {@code null} para a raiz e para registros fora
+     * da hierarquia.
+     */
+    public String getParent(String identifier) {
+        return parents.get(identifier);
+    }
+
+    private static Map<String, String> parents(String... pairs) {
+        final Map<String, String> parents = new HashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            parents.put(pairs[i], pairs[i + 1]);
+        }
+        return parents;
+    }
+}
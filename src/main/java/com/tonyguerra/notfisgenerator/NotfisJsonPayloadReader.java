@@ -0,0 +1,200 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Lê o payload JSON token a token e associa cada linha diretamente aos slots
+ * do layout compilado, sem montar a árvore de {@link NotfisParam}.
+ *
+ * Formato esperado:
+ * { "000": [ [ {"name": ..., "value": ...}, ... ], ... ], ... }
+ */
+final class NotfisJsonPayloadReader {
+    static final String JACKSON_MISSING = "jackson-core não encontrado no classpath; ele é necessário apenas para "
+            + "ler JSON (com.fasterxml.jackson.core:jackson-core).";
+
+    private static final JsonFactory JSON = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final NotfisLayout layout;
+
+    NotfisJsonPayloadReader(NotfisLayout layout) {
+        this.layout = layout;
+    }
+
+    static void read(NotfisLayout layout, String json, NotfisLineConsumer consumer) throws NotfisException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            new NotfisJsonPayloadReader(layout).read(parser, consumer);
+        } catch (IOException ex) {
+            throw invalid(ex);
+        }
+    }
+
+    static void read(NotfisLayout layout, InputStream json, NotfisLineConsumer consumer) throws NotfisException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            new NotfisJsonPayloadReader(layout).read(parser, consumer);
+        } catch (IOException ex) {
+            throw invalid(ex);
+        }
+    }
+
+    static void read(NotfisLayout layout, Reader json, NotfisLineConsumer consumer) throws NotfisException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            new NotfisJsonPayloadReader(layout).read(parser, consumer);
+        } catch (IOException ex) {
+            throw invalid(ex);
+        }
+    }
+
+    private static NotfisException invalid(IOException ex) {
+        return new NotfisException("JSON inválido: " + ex.getMessage(), ex);
+    }
+
+    /**
+     * Lê um documento JSON genérico cuja raiz é um objeto de listas, como os
+     * arquivos de layout: objetos viram {@link Map}, arrays viram
+     * {@link List}. O stream não é fechado.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, List<Object>> readTree(InputStream is) throws IOException, NotfisException {
+        try (JsonParser parser = JSON.createParser(is)) {
+            final JsonToken token = parser.nextToken();
+            expect(token, JsonToken.START_OBJECT, parser);
+
+            final Map<String, List<Object>> root = new LinkedHashMap<String, List<Object>>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+                final Object value = readValue(parser, parser.nextToken());
+                if (value != null && !(value instanceof List)) {
+                    throw new NotfisException("JSON inválido: esperado uma lista em '" + key + "'.");
+                }
+                root.put(key, (List<Object>) value);
+            }
+            return root;
+        }
+    }
+
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException, NotfisException {
+        if (token == JsonToken.START_OBJECT) {
+            final Map<String, Object> object = new LinkedHashMap<String, Object>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+                object.put(key, readValue(parser, parser.nextToken()));
+            }
+            return object;
+        }
+        if (token == JsonToken.START_ARRAY) {
+            final List<Object> array = new ArrayList<Object>();
+            JsonToken next;
+            while ((next = parser.nextToken()) != JsonToken.END_ARRAY) {
+                array.add(readValue(parser, next));
+            }
+            return array;
+        }
+        return readScalar(parser, token);
+    }
+
+    /**
+     * Entrega cada linha ao {@code consumer} assim que ela é lida e validada.
+     */
+    void read(JsonParser parser, NotfisLineConsumer consumer) throws IOException, NotfisException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String identifier = parser.getCurrentName();
+
+            final NotfisRecordLayout record = layout.getRecord(identifier);
+            if (record == null) {
+                throw new NotfisException("Identificador de registro não encontrado na configuração: " + identifier);
+            }
+
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            expect(token, JsonToken.START_ARRAY, parser);
+
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                consumer.accept(readLine(parser, record));
+            }
+        }
+    }
+
+    private static NotfisLine readLine(JsonParser parser, NotfisRecordLayout record)
+            throws IOException, NotfisException {
+        final Object[] values = new Object[record.getFieldCount()];
+
+        if (parser.currentToken() != JsonToken.VALUE_NULL) {
+            expect(parser.currentToken(), JsonToken.START_ARRAY, parser);
+
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                expect(parser.currentToken(), JsonToken.START_OBJECT, parser);
+                readParam(parser, record, values);
+            }
+        }
+
+        record.checkMandatory(values);
+
+        return new NotfisLine(record, values);
+    }
+
+    private static void readParam(JsonParser parser, NotfisRecordLayout record, Object[] values)
+            throws IOException, NotfisException {
+        String name = null;
+        Object value = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            if ("name".equals(key)) {
+                name = token == JsonToken.VALUE_NULL ? null : parser.getText();
+            } else if ("value".equals(key)) {
+                value = readScalar(parser, token);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        record.bind(values, name, value);
+    }
+
+    private static Object readScalar(JsonParser parser, JsonToken token) throws IOException, NotfisException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                // valores monetários chegam exatos, sem passar por double
+                return parser.getDecimalValue();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getBooleanValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new NotfisException("Valor inválido no JSON em " + parser.getCurrentLocation());
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, JsonParser parser) throws NotfisException {
+        if (actual != expected) {
+            throw new NotfisException("JSON inválido: esperado " + expected + " mas encontrado " + actual
+                    + " em " + parser.getCurrentLocation());
+        }
+    }
+}
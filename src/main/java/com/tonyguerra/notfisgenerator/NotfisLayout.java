@@ -0,0 +1,67 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Conjunto imutável de {@link NotfisRecordLayout} de uma versão de notfis,
+ * compilado uma única vez a partir da configuração.
+ */
+public final class NotfisLayout {
+    private final Map<String, NotfisRecordLayout> records;
+    private final int maxWidth;
+    private final NotfisMapper mapper;
+
+    private NotfisLayout(Map<String, NotfisRecordLayout> records) {
+        this.records = Collections.unmodifiableMap(records);
+        this.mapper = new NotfisMapper(this);
+
+        int max = 0;
+        for (final NotfisRecordLayout record : records.values()) {
+            max = Math.max(max, record.getWidth());
+        }
+        this.maxWidth = max;
+    }
+
+    public static NotfisLayout compile(Map<String, List<NotfisConfigField>> config) throws NotfisException {
+        if (config == null) {
+            throw new NotfisException("Configuração nula.");
+        }
+
+        final Map<String, NotfisRecordLayout> compiled = new HashMap<String, NotfisRecordLayout>();
+
+        for (Map.Entry<String, List<NotfisConfigField>> entry : config.entrySet()) {
+            final List<NotfisConfigField> fields = entry.getValue() == null
+                    ? Collections.<NotfisConfigField>emptyList()
+                    : entry.getValue();
+            compiled.put(entry.getKey(), new NotfisRecordLayout(entry.getKey(), fields));
+        }
+
+        return new NotfisLayout(compiled);
+    }
+
+    public NotfisRecordLayout getRecord(String identifier) {
+        return records.get(identifier);
+    }
+
+    public Set<String> getIdentifiers() {
+        return records.keySet();
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * Mapper de objetos anotados deste layout; o cache de classes resolvidas é
+     * compartilhado por todos que usam o layout.
+     */
+    public NotfisMapper getMapper() {
+        return mapper;
+    }
+}
@@ -0,0 +1,146 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Obtém os layouts de cada {@link NotfisType}: primeiro das tabelas geradas no
+ * build ({@link NotfisGeneratedLayouts}), sem nenhuma leitura de JSON; só se o
+ * tipo não tiver sido gerado, lê o arquivo de configuração JSON do classpath
+ * (o que exige o jackson-core).
+ */
+final class NotfisLayoutLoader {
+
+    private NotfisLayoutLoader() {
+    }
+
+    static NotfisLayout load(NotfisType type) throws NotfisException {
+        if (type == null) {
+            throw new NotfisException("Tipo de notfis não especificado.");
+        }
+
+        final Map<String, List<NotfisConfigField>> generated = NotfisGeneratedLayouts.get(type);
+        if (generated != null) {
+            return NotfisLayout.compile(generated);
+        }
+
+        return loadJson(type);
+    }
+
+    /**
+     * Lê e compila o layout a partir do JSON do classpath, ignorando as tabelas
+     * geradas.
+     */
+    static NotfisLayout loadJson(NotfisType type) throws NotfisException {
+        if (type == null) {
+            throw new NotfisException("Tipo de notfis não especificado.");
+        }
+
+        final String configFilename = "notfis/" + type.getConfigFilename();
+
+        try (InputStream is = NotfisLayoutLoader.class.getClassLoader().getResourceAsStream(configFilename)) {
+            if (is == null) {
+                throw new NotfisException("Arquivo de configuração não encontrado: " + configFilename);
+            }
+
+            return NotfisLayout.compile(parse(is, configFilename));
+
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao carregar o arquivo de configuração: " + configFilename, ex);
+        }
+    }
+
+    static Map<String, List<NotfisConfigField>> parse(InputStream is, String source) throws NotfisException {
+        try {
+            final Map<String, List<Object>> raw = NotfisJsonPayloadReader.readTree(is);
+
+            final Map<String, List<NotfisConfigField>> parsed = new HashMap<String, List<NotfisConfigField>>();
+
+            for (Map.Entry<String, List<Object>> entry : raw.entrySet()) {
+                final String identifier = entry.getKey();
+                final List<NotfisConfigField> configFields = new ArrayList<NotfisConfigField>();
+
+                if (entry.getValue() != null) {
+                    for (Object item : entry.getValue()) {
+                        // aceita tanto [ {campo}, ... ] quanto [ [ {campo}, ... ] ]
+                        if (item instanceof List) {
+                            for (Object inner : (List<?>) item) {
+                                configFields.add(toConfigField(inner, source));
+                            }
+                        } else {
+                            configFields.add(toConfigField(item, source));
+                        }
+                    }
+                }
+
+                parsed.put(identifier, configFields);
+            }
+
+            return parsed;
+
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao carregar o arquivo de configuração: " + source, ex);
+        } catch (NoClassDefFoundError ex) {
+            throw new NotfisException(NotfisJsonPayloadReader.JACKSON_MISSING, ex);
+        }
+    }
+
+    private static NotfisConfigField toConfigField(Object item, String source) throws NotfisException {
+        if (!(item instanceof Map)) {
+            throw new NotfisException("Campo inválido na configuração: " + source);
+        }
+
+        final Map<?, ?> f = (Map<?, ?>) item;
+
+        final String name = asString(f.get("name"));
+        final String formatStr = asStringOrDefault(f.get("format"), "A");
+        final NotfisFieldType format = "A".equalsIgnoreCase(formatStr)
+                ? NotfisFieldType.ALPHANUMERIC
+                : NotfisFieldType.NUMERIC;
+
+        final short position = asShort(f.get("position"));
+        final short size = asShort(f.get("size"));
+        final boolean mandatory = asBoolean(f.get("mandatory"));
+        final short decimals = f.get("decimals") == null ? 0 : asShort(f.get("decimals"));
+
+        return new NotfisConfigField(name, format, position, size, mandatory, decimals);
+    }
+
+    // ---------- helpers de conversão ----------
+    private static String asString(Object v) throws NotfisException {
+        if (v == null) {
+            throw new NotfisException("Campo 'name' ausente na configuração.");
+        }
+        return v.toString();
+    }
+
+    private static String asStringOrDefault(Object v, String def) {
+        return v == null ? def : v.toString();
+    }
+
+    private static short asShort(Object v) throws NotfisException {
+        if (v == null) {
+            throw new NotfisException("Campo numérico ausente na configuração.");
+        }
+
+        if (v instanceof Number) {
+            return (short) ((Number) v).intValue();
+        }
+
+        return Short.parseShort(v.toString());
+    }
+
+    private static boolean asBoolean(Object v) {
+        if (v == null)
+            return false;
+        if (v instanceof Boolean)
+            return ((Boolean) v).booleanValue();
+        return Boolean.parseBoolean(v.toString());
+    }
+}
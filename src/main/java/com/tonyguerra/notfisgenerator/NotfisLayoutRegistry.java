@@ -0,0 +1,264 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Layouts próprios (variações de transportadoras), registrados por nome a
+ * partir de arquivos JSON no mesmo formato de {@code notfis31.json}. Cada
+ * layout é compilado uma única vez por conteúdo: arquivos idênticos,
+ * registrados com nomes diferentes ou recarregados sem mudança, compartilham
+ * o mesmo {@link NotfisLayout} (chave SHA-256 dos bytes).
+ *
+ * Com {@link #watch(Path)}, os arquivos {@code *.json} do diretório são
+ * recarregados quando mudam. A troca é atômica por nome e não interrompe
+ * gerações em andamento: um {@link NotfisWriter} obtido antes continua com o
+ * layout que recebeu, e os seguintes já recebem o novo. Um arquivo inválido
+ * mantém o layout anterior.
+ *
+ * Ler JSON exige o jackson-core.
+ */
+public final class NotfisLayoutRegistry implements Closeable {
+    private static final String EXTENSION = ".json";
+
+    private final ConcurrentHashMap<String, Entry> layouts = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentHashMap<String, NotfisLayout> compiled = new ConcurrentHashMap<String, NotfisLayout>();
+
+    private WatchService watchService;
+    private volatile Consumer<NotfisException> onReloadFailure = ex -> {
+    };
+
+    /**
+     * Registra (ou substitui) o layout {@code name} a partir do arquivo.
+     */
+    public NotfisLayout register(String name, Path file) throws NotfisException {
+        if (file == null) {
+            throw new NotfisException("Caminho do layout nulo.");
+        }
+
+        try (InputStream is = Files.newInputStream(file)) {
+            return register(name, is, file.toString());
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao carregar o arquivo de configuração: " + file, ex);
+        }
+    }
+
+    /**
+     * Registra (ou substitui) o layout {@code name} a partir do JSON. O stream
+     * não é fechado.
+     */
+    public NotfisLayout register(String name, InputStream json) throws NotfisException {
+        if (json == null) {
+            throw new NotfisException("InputStream nulo.");
+        }
+        return register(name, json, name);
+    }
+
+    private NotfisLayout register(String name, InputStream json, String source) throws NotfisException {
+        if (name == null || name.isEmpty()) {
+            throw new NotfisException("Nome do layout não especificado.");
+        }
+
+        final byte[] bytes;
+        try {
+            bytes = json.readAllBytes();
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao carregar o arquivo de configuração: " + source, ex);
+        }
+
+        final String hash = hash(bytes);
+        NotfisLayout layout = compiled.get(hash);
+        if (layout == null) {
+            layout = NotfisLayout.compile(NotfisLayoutLoader.parse(new ByteArrayInputStream(bytes), source));
+            final NotfisLayout raced = compiled.putIfAbsent(hash, layout);
+            if (raced != null) {
+                layout = raced;
+            }
+        }
+
+        synchronized (layouts) {
+            final Entry previous = layouts.put(name, new Entry(hash, layout));
+            if (previous != null && !previous.hash.equals(hash)) {
+                evict(previous.hash);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Descarta o layout compilado se nenhum nome o usa mais.
+     */
+    private void evict(String hash) {
+        for (final Entry entry : layouts.values()) {
+            if (entry.hash.equals(hash)) {
+                return;
+            }
+        }
+        compiled.remove(hash);
+    }
+
+    public NotfisLayout get(String name) throws NotfisException {
+        final Entry entry = name == null ? null : layouts.get(name);
+        if (entry == null) {
+            throw new NotfisException("Layout não registrado: " + name);
+        }
+        return entry.layout;
+    }
+
+    /**
+     * Writer com o layout atual de {@code name}; trocas posteriores não o
+     * afetam.
+     */
+    public NotfisWriter writer(String name) throws NotfisException {
+        return NotfisWriter.forLayout(get(name));
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(layouts.keySet());
+    }
+
+    /**
+     * Registra todos os {@code *.json} do diretório (nome = arquivo sem a
+     * extensão) e passa a recarregá-los quando forem criados ou alterados.
+     * Falhas de recarga são ignoradas; use
+     * {@link #watch(Path, Consumer)} para recebê-las.
+     */
+    public void watch(Path directory) throws NotfisException {
+        watch(directory, null);
+    }
+
+    /**
+     * Como {@link #watch(Path)}, informando as falhas de recarga a
+     * {@code onReloadFailure} (chamado na thread do watcher).
+     */
+    public synchronized void watch(Path directory, Consumer<NotfisException> onReloadFailure)
+            throws NotfisException {
+        if (directory == null) {
+            throw new NotfisException("Diretório nulo.");
+        }
+        if (onReloadFailure != null) {
+            this.onReloadFailure = onReloadFailure;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (final Path file : files) {
+                register(nameOf(file), file);
+            }
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao ler o diretório de layouts: " + directory, ex);
+        }
+
+        try {
+            if (watchService == null) {
+                final WatchService service = directory.getFileSystem().newWatchService();
+                final Thread thread = new Thread(() -> poll(service), "notfis-layout-watcher");
+                thread.setDaemon(true);
+                thread.start();
+                watchService = service;
+            }
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao observar o diretório de layouts: " + directory, ex);
+        }
+    }
+
+    private void poll(WatchService service) {
+        try {
+            while (true) {
+                final WatchKey key = service.take();
+                final Path directory = (Path) key.watchable();
+
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        reloadAll(directory);
+                    } else {
+                        final Path file = directory.resolve((Path) event.context());
+                        if (file.getFileName().toString().endsWith(EXTENSION)) {
+                            reload(file);
+                        }
+                    }
+                }
+
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // close()
+        }
+    }
+
+    private void reloadAll(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (final Path file : files) {
+                reload(file);
+            }
+        } catch (IOException ex) {
+            onReloadFailure.accept(new NotfisException("Erro ao ler o diretório de layouts: " + directory, ex));
+        }
+    }
+
+    private void reload(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            register(nameOf(file), file);
+        } catch (NotfisException ex) {
+            onReloadFailure.accept(ex);
+        }
+    }
+
+    private static String nameOf(Path file) {
+        final String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - EXTENSION.length());
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // SHA-256 é obrigatório em toda JVM
+        }
+    }
+
+    /**
+     * Para de observar os diretórios. Os layouts registrados continuam
+     * disponíveis.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private static final class Entry {
+        private final String hash;
+        private final NotfisLayout layout;
+
+        private Entry(String hash, NotfisLayout layout) {
+            this.hash = hash;
+            this.layout = layout;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Registro global dos layouts compilados. Cada {@link NotfisType} é lido e
+ * compilado uma única vez por JVM e compartilhado, somente leitura, por todos
+ * os {@link NotfisWriter}.
+ */
+public final class NotfisLayouts {
+    private static final AtomicReferenceArray<NotfisLayout> CACHE = new AtomicReferenceArray<NotfisLayout>(
+            NotfisType.values().length);
+
+    private NotfisLayouts() {
+    }
+
+    public static NotfisLayout get(NotfisType type) throws NotfisException {
+        if (type == null) {
+            throw new NotfisException("Tipo de notfis não especificado.");
+        }
+
+        final NotfisLayout cached = CACHE.get(type.ordinal());
+        if (cached != null) {
+            return cached;
+        }
+
+        synchronized (CACHE) {
+            NotfisLayout layout = CACHE.get(type.ordinal());
+            if (layout == null) {
+                layout = NotfisLayoutLoader.load(type);
+                CACHE.set(type.ordinal(), layout);
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * Carrega antecipadamente os layouts informados (ou todos, se nenhum for
+     * informado), evitando o custo de leitura na primeira geração.
+     */
+    public static void warmUp(NotfisType... types) throws NotfisException {
+        final NotfisType[] targets = types == null || types.length == 0 ? NotfisType.values() : types;
+        for (final NotfisType type : targets) {
+            get(type);
+        }
+    }
+}
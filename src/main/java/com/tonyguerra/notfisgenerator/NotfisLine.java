@@ -1,6 +1,8 @@
 package com.tonyguerra.notfisgenerator;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 import java.util.HashMap;
@@ -9,27 +11,220 @@ import java.util.Collections;
 
 public final class NotfisLine implements Comparable<NotfisLine> {
     private final int registration;
-    private final List<NotfisField> field;
+    private final NotfisRecordLayout layout;
+    private final Object[] values;
+    private final byte[] rendered;
+    private List<NotfisField> field;
 
     public NotfisLine(String registration, List<NotfisField> field) {
         this.registration = parseRegistration(registration);
+        this.layout = null;
+        this.values = null;
+        this.rendered = null;
         this.field = field;
     }
 
+    NotfisLine(NotfisRecordLayout layout, Object[] values) {
+        this.registration = layout.getRegistration();
+        this.layout = layout;
+        this.values = values;
+        this.rendered = null;
+        this.field = null;
+    }
+
+    /**
+     * Linha já renderizada (ex: pelo {@link NotfisRecordBuilder}); os bytes têm
+     * exatamente a largura do registro.
+     */
+    NotfisLine(NotfisRecordLayout layout, byte[] rendered) {
+        this.registration = layout.getRegistration();
+        this.layout = layout;
+        this.values = null;
+        this.rendered = rendered;
+        this.field = null;
+    }
+
     public int getRegistration() {
         return registration;
     }
 
     public List<NotfisField> getField() {
+        if (field == null && layout != null) {
+            final byte[] bytes;
+            if (rendered != null) {
+                bytes = rendered;
+            } else {
+                bytes = new byte[layout.getWidth()];
+                layout.render(values, bytes, 0);
+            }
+
+            final List<NotfisField> populated = new ArrayList<>();
+            for (int i = 0; i < layout.getFieldCount(); i++) {
+                final int start = layout.getFieldOffset(i);
+                int end = start + layout.getFieldSize(i);
+                while (end > start && bytes[end - 1] == ' ') {
+                    end--;
+                }
+                if (values != null ? values[i] != null : end > start) {
+                    populated.add(new NotfisField(
+                            layout.getFieldName(i),
+                            layout.getFieldFormat(i),
+                            (short) (start + 1),
+                            (short) layout.getFieldSize(i),
+                            layout.isFieldMandatory(i),
+                            new String(bytes, start, end - start, StandardCharsets.ISO_8859_1)));
+                }
+            }
+            field = populated;
+        }
         return field;
     }
 
+    NotfisRecordLayout getLayout() {
+        return layout;
+    }
+
+    Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * Escreve a linha (sem terminador) em {@code dest} a partir de {@code off}.
+     */
+    void renderTo(byte[] dest, int off, NotfisSanitizer sanitizer, NotfisRenderStats stats) {
+        if (rendered != null) {
+            System.arraycopy(rendered, 0, dest, off, rendered.length);
+        } else {
+            layout.render(values, dest, off, sanitizer, stats);
+        }
+    }
+
     @Override
     public int compareTo(NotfisLine other) {
         return Integer.compare(this.registration, other.registration);
     }
 
+    /**
+     * Ordena as linhas do arquivo em tempo O(n + k log k), sendo k o número de
+     * registros distintos. A ordem é estável e determinística:
+     * <ol>
+     * <li>linhas do menor registro (ex: 000), na ordem de entrada;</li>
+     * <li>registros únicos menores que o menor registro repetido, em ordem
+     * crescente;</li>
+     * <li>registros repetidos intercalados (uma linha de cada registro por
+     * rodada, em ordem crescente de registro e, dentro do registro, na ordem de
+     * entrada);</li>
+     * <li>registros únicos entre o menor e o maior registro repetido, em ordem
+     * crescente;</li>
+     * <li>registros únicos maiores que o maior registro repetido, em ordem
+     * crescente.</li>
+     * </ol>
+     */
     public static List<NotfisLine> orderLines(List<NotfisLine> lines) {
+        final List<NotfisLine> ordered = new ArrayList<>(lines.size());
+        if (lines.isEmpty()) {
+            return ordered;
+        }
+
+        final HashMap<Integer, List<NotfisLine>> buckets = new HashMap<>();
+        for (final NotfisLine line : lines) {
+            buckets.computeIfAbsent(line.getRegistration(), k -> new ArrayList<>()).add(line);
+        }
+
+        final int[] registrations = new int[buckets.size()];
+        int k = 0;
+        for (final Integer registration : buckets.keySet()) {
+            registrations[k++] = registration;
+        }
+        Arrays.sort(registrations);
+
+        final List<List<NotfisLine>> sorted = new ArrayList<>(registrations.length);
+        final long[] counts = new long[registrations.length];
+        for (int i = 0; i < registrations.length; i++) {
+            sorted.add(buckets.get(registrations[i]));
+            counts[i] = sorted.get(i).size();
+        }
+
+        final int[] cursors = new int[registrations.length];
+        visitOrder(registrations, counts, i -> ordered.add(sorted.get(i).get(cursors[i]++)));
+
+        return ordered;
+    }
+
+    /**
+     * Percorre a ordem de {@link #orderLines} conhecendo apenas quantas linhas
+     * cada registro tem: {@code visitor} recebe, para cada linha do arquivo, o
+     * índice do registro em {@code registrations} (crescente) de onde sai a
+     * próxima linha. Permite ordenar sem manter as linhas em memória.
+     */
+    static <E extends Exception> void visitOrder(int[] registrations, long[] counts, OrderVisitor<E> visitor)
+            throws E {
+        if (registrations.length == 0) {
+            return;
+        }
+
+        for (long n = 0; n < counts[0]; n++) {
+            visitor.visit(0);
+        }
+
+        final int[] repeated = new int[registrations.length];
+        int active = 0;
+        int minRepeated = Integer.MAX_VALUE;
+        int maxRepeated = Integer.MIN_VALUE;
+        for (int i = 1; i < registrations.length; i++) {
+            if (counts[i] > 1) {
+                repeated[active++] = i;
+                minRepeated = Math.min(minRepeated, registrations[i]);
+                maxRepeated = Math.max(maxRepeated, registrations[i]);
+            }
+        }
+
+        // únicos abaixo do menor repetido
+        for (int i = 1; i < registrations.length && registrations[i] < minRepeated; i++) {
+            for (long n = 0; n < counts[i]; n++) {
+                visitor.visit(i);
+            }
+        }
+
+        // repetidos intercalados; registros esgotados saem da rodada
+        for (long round = 0; active > 0; round++) {
+            int next = 0;
+            for (int r = 0; r < active; r++) {
+                final int i = repeated[r];
+                visitor.visit(i);
+                if (counts[i] > round + 1) {
+                    repeated[next++] = i;
+                }
+            }
+            active = next;
+        }
+
+        // únicos entre o menor e o maior repetido, depois os acima do maior
+        for (int i = 1; i < registrations.length; i++) {
+            if (counts[i] == 1 && registrations[i] > minRepeated && registrations[i] < maxRepeated) {
+                visitor.visit(i);
+            }
+        }
+        for (int i = 1; i < registrations.length; i++) {
+            if (registrations[i] > maxRepeated && registrations[i] >= minRepeated) {
+                for (long n = 0; n < counts[i]; n++) {
+                    visitor.visit(i);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface OrderVisitor<E extends Exception> {
+        void visit(int index) throws E;
+    }
+
+    /**
+     * Implementação original, mantida apenas para comparação em benchmarks.
+     * A intercalação dos repetidos depende da ordem de iteração do
+     * {@link HashMap}.
+     */
+    static List<NotfisLine> orderLinesLegacy(List<NotfisLine> lines) {
         final List<NotfisLine> priorityLines = new ArrayList<>();
         final List<NotfisLine> remainingLines = new ArrayList<>(lines);
 
@@ -123,7 +318,7 @@ public final class NotfisLine implements Comparable<NotfisLine> {
         return rearrangedLines;
     }
 
-    private static int parseRegistration(String reg) {
+    static int parseRegistration(String reg) {
         if (reg == null || reg.isEmpty())
             return Integer.MAX_VALUE;
 
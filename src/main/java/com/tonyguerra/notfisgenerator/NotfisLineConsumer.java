@@ -0,0 +1,12 @@
+package com.tonyguerra.notfisgenerator;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Recebe as linhas à medida que são validadas, sem exigir que todas fiquem
+ * em uma lista.
+ */
+@FunctionalInterface
+interface NotfisLineConsumer {
+    void accept(NotfisLine line) throws NotfisException;
+}
@@ -0,0 +1,28 @@
+package com.tonyguerra.notfisgenerator;
+
+/**
+ * Terminador de linha do arquivo gerado. Muitas VANs de transportadoras
+ * exigem {@link #CRLF}.
+ */
+public enum NotfisLineTerminator {
+    LF(new byte[] { '\n' }), CRLF(new byte[] { '\r', '\n' });
+
+    private final byte[] bytes;
+
+    NotfisLineTerminator(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * Escreve o terminador em {@code dest} a partir de {@code off}.
+     */
+    void writeTo(byte[] dest, int off) {
+        for (int i = 0; i < bytes.length; i++) {
+            dest[off + i] = bytes[i];
+        }
+    }
+}
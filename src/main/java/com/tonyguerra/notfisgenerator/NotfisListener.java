@@ -0,0 +1,44 @@
+package com.tonyguerra.notfisgenerator;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Recebe métricas de cada geração do {@link NotfisWriter}. Todos os métodos
+ * têm implementação vazia; basta sobrescrever os de interesse. As chamadas
+ * acontecem na thread que iniciou a geração, ao fim de cada etapa, e podem
+ * vir de várias gerações ao mesmo tempo.
+ *
+ * Com o {@link #NOOP} (padrão) o writer não mede nada.
+ */
+public interface NotfisListener {
+    NotfisListener NOOP = new NotfisListener() {
+    };
+
+    default void onStage(NotfisStage stage, long nanos) {
+    }
+
+    /**
+     * Quantidade de linhas renderizadas de um identificador de registro.
+     */
+    default void onRecords(String identifier, long lines) {
+    }
+
+    default void onBytesWritten(long bytes) {
+    }
+
+    /**
+     * Quantidade de campos que tiveram caracteres removidos ou convertidos
+     * pela sanitização.
+     */
+    default void onFieldsSanitized(long fields) {
+    }
+
+    /**
+     * Quantidade de campos cujo valor excedeu o tamanho do campo e foi cortado.
+     */
+    default void onFieldsTruncated(long fields) {
+    }
+
+    default void onValidationFailure(NotfisException ex) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de {@link NotfisWriter#writeFiles}: os arquivos gerados, na
+ * ordem das partes.
+ */
+public final class NotfisManifest {
+    private final List<Part> parts;
+
+    NotfisManifest(List<Part> parts) {
+        this.parts = Collections.unmodifiableList(parts);
+    }
+
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (final Part part : parts) {
+            total += part.bytes;
+        }
+        return total;
+    }
+
+    public static final class Part {
+        private final Path path;
+        private final long bytes;
+        private final int lineCount;
+        private final int recordCount;
+
+        Part(Path path, long bytes, int lineCount, int recordCount) {
+            this.path = path;
+            this.bytes = bytes;
+            this.lineCount = lineCount;
+            this.recordCount = recordCount;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * Quantidade de linhas do registro contado pelo {@link NotfisSplit}
+         * (ex: notas 313/505).
+         */
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + bytes + " bytes, " + lineCount + " linhas)";
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Converte objetos anotados com {@link NotfisRecord}/{@link NotfisColumn}
+ * direto em {@link NotfisLine}, sem montar {@link NotfisParam} nem
+ * {@link NotfisPayload}.
+ *
+ * Cada classe é resolvida contra o layout uma única vez: os nomes viram slots
+ * e os atributos/métodos viram {@link MethodHandle}s guardados em cache. A
+ * conversão em si não usa reflexão. Thread-safe; há uma instância por
+ * {@link NotfisLayout}, obtida com {@link NotfisWriter#mapper()}.
+ *
+ * <pre>
+ * &#64;NotfisRecord("313")
+ * class Invoice {
+ *     &#64;NotfisColumn("NÚMERO DA NOTA FISCAL") long number;
+ *     ...
+ * }
+ *
+ * final NotfisMapper mapper = writer.mapper();
+ * writer.writeFileToStream(mapper.toLines(invoices), out);
+ * </pre>
+ */
+public final class NotfisMapper {
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final NotfisLayout layout;
+    // ClassValue não impede o descarte do classloader das classes mapeadas (ex: redeploy)
+    private final ClassValue<Binding> bindings = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            try {
+                return resolve(type);
+            } catch (NotfisException ex) {
+                throw new ResolveFailure(ex); // não fica em cache; a próxima chamada tenta de novo
+            }
+        }
+    };
+
+    NotfisMapper(NotfisLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Converte um objeto anotado em uma linha, validando os campos
+     * obrigatórios.
+     */
+    public NotfisLine toLine(Object source) throws NotfisException {
+        if (source == null) {
+            throw new NotfisException("Objeto nulo.");
+        }
+        return binding(source.getClass()).toLine(source);
+    }
+
+    /**
+     * Converte todos os objetos, que podem ser de classes (registros)
+     * diferentes. A ordem do arquivo é definida depois, pelo writer.
+     */
+    public List<NotfisLine> toLines(Iterable<?> sources) throws NotfisException {
+        if (sources == null) {
+            throw new NotfisException("Objetos nulos.");
+        }
+
+        final List<NotfisLine> lines = new ArrayList<NotfisLine>();
+        for (final Object source : sources) {
+            lines.add(toLine(source));
+        }
+        return lines;
+    }
+
+    private Binding binding(Class<?> type) throws NotfisException {
+        try {
+            return bindings.get(type);
+        } catch (ResolveFailure ex) {
+            throw ex.failure;
+        }
+    }
+
+    private Binding resolve(Class<?> type) throws NotfisException {
+        final NotfisRecord annotation = type.getAnnotation(NotfisRecord.class);
+        if (annotation == null) {
+            throw new NotfisException("Classe sem @NotfisRecord: " + type.getName());
+        }
+
+        final NotfisRecordLayout record = layout.getRecord(annotation.value());
+        if (record == null) {
+            throw new NotfisException("Identificador de registro não encontrado na configuração: "
+                    + annotation.value() + " (" + type.getName() + ")");
+        }
+
+        final List<Integer> slots = new ArrayList<Integer>();
+        final List<MethodHandle> getters = new ArrayList<MethodHandle>();
+        final Set<String> overridden = new HashSet<String>();
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            final MethodHandles.Lookup lookup = lookup(c);
+
+            try {
+                for (final Field field : c.getDeclaredFields()) {
+                    final NotfisColumn column = field.getAnnotation(NotfisColumn.class);
+                    if (column == null) {
+                        continue;
+                    }
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        throw new NotfisException("@NotfisColumn em atributo estático: " + field);
+                    }
+                    add(record, slots, getters, column.value(), lookup.unreflectGetter(field), type);
+                }
+
+                for (final Method method : c.getDeclaredMethods()) {
+                    // pontes (genéricos, retorno covariante) copiam a anotação do método real
+                    if (method.isBridge() || method.isSynthetic()) {
+                        continue;
+                    }
+                    final NotfisColumn column = method.getAnnotation(NotfisColumn.class);
+                    if (column == null) {
+                        continue;
+                    }
+                    if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                            || method.getReturnType() == void.class) {
+                        throw new NotfisException(
+                                "@NotfisColumn exige um método de instância sem parâmetros e com retorno: " + method);
+                    }
+                    // já anotado numa subclasse: vale a sobrescrita mais derivada
+                    if (!Modifier.isPrivate(method.getModifiers()) && !overridden.add(method.getName())) {
+                        continue;
+                    }
+                    add(record, slots, getters, column.value(), lookup.unreflect(method), type);
+                }
+            } catch (IllegalAccessException ex) {
+                throw new NotfisException("Sem acesso aos membros de " + c.getName(), ex);
+            }
+        }
+
+        final int[] slotArray = new int[slots.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slots.get(i);
+        }
+        return new Binding(record, slotArray, getters.toArray(new MethodHandle[0]));
+    }
+
+    private static void add(NotfisRecordLayout record, List<Integer> slots, List<MethodHandle> getters, String name,
+            MethodHandle getter, Class<?> type) throws NotfisException {
+        final int slot = record.slotOf(name);
+        if (slot < 0) {
+            throw new NotfisException("Campo '" + name + "' não existe no identificador "
+                    + record.getIdentifier() + " (" + type.getName() + ")");
+        }
+        if (slots.contains(slot)) {
+            throw new NotfisException("Campo '" + name + "' mapeado mais de uma vez em " + type.getName());
+        }
+
+        slots.add(slot);
+        getters.add(getter.asType(GETTER));
+    }
+
+    private static MethodHandles.Lookup lookup(Class<?> type) throws NotfisException {
+        final Module module = NotfisMapper.class.getModule();
+        module.addReads(type.getModule());
+
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException ex) {
+            throw new NotfisException("Sem acesso a " + type.getName() + "; o pacote "
+                    + type.getPackageName() + " precisa ser aberto (opens) para " + module.getName(), ex);
+        }
+    }
+
+    private static final class Binding {
+        private final NotfisRecordLayout record;
+        private final int[] slots;
+        private final MethodHandle[] getters;
+
+        private Binding(NotfisRecordLayout record, int[] slots, MethodHandle[] getters) {
+            this.record = record;
+            this.slots = slots;
+            this.getters = getters;
+        }
+
+        private NotfisLine toLine(Object source) throws NotfisException {
+            final Object[] values = new Object[record.getFieldCount()];
+
+            for (int i = 0; i < slots.length; i++) {
+                final Object value;
+                try {
+                    value = (Object) getters[i].invokeExact(source);
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new NotfisException("Erro ao ler o campo '" + record.getFieldName(slots[i])
+                            + "' de " + source.getClass().getName(), ex);
+                }
+                values[slots[i]] = value == null ? null : record.coerce(slots[i], value);
+            }
+
+            record.checkMandatory(values);
+            return new NotfisLine(record, values);
+        }
+    }
+
+    private static final class ResolveFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final NotfisException failure;
+
+        private ResolveFailure(NotfisException failure) {
+            super(failure.getMessage(), failure, false, false);
+            this.failure = failure;
+        }
+    }
+}
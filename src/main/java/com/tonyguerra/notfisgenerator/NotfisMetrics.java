@@ -0,0 +1,138 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * {@link NotfisListener} que acumula as métricas em memória: histograma de
+ * duração por etapa (baldes em potências de 2 de nanossegundos) e contadores
+ * totais. Seguro para uso concorrente; serve de ponte para outras bibliotecas
+ * de métricas via os getters.
+ */
+public final class NotfisMetrics implements NotfisListener {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray[] histograms = new AtomicLongArray[NotfisStage.values().length];
+    private final LongAdder[] stageTotals = new LongAdder[NotfisStage.values().length];
+    private final Map<String, LongAdder> records = new ConcurrentHashMap<String, LongAdder>();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder fieldsSanitized = new LongAdder();
+    private final LongAdder fieldsTruncated = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+
+    public NotfisMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new AtomicLongArray(BUCKETS);
+            stageTotals[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void onStage(NotfisStage stage, long nanos) {
+        histograms[stage.ordinal()].incrementAndGet(bucketOf(nanos));
+        stageTotals[stage.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void onRecords(String identifier, long lines) {
+        records.computeIfAbsent(identifier, k -> new LongAdder()).add(lines);
+    }
+
+    @Override
+    public void onBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void onFieldsSanitized(long fields) {
+        fieldsSanitized.add(fields);
+    }
+
+    @Override
+    public void onFieldsTruncated(long fields) {
+        fieldsTruncated.add(fields);
+    }
+
+    @Override
+    public void onValidationFailure(NotfisException ex) {
+        validationFailures.increment();
+    }
+
+    public long getStageCount(NotfisStage stage) {
+        final AtomicLongArray histogram = histograms[stage.ordinal()];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram.get(i);
+        }
+        return count;
+    }
+
+    public long getStageTotalNanos(NotfisStage stage) {
+        return stageTotals[stage.ordinal()].sum();
+    }
+
+    /**
+     * Percentil aproximado (limite superior do balde) da duração da etapa, em
+     * nanossegundos. {@code percentile} vai de 0 a 100.
+     */
+    public long getStagePercentileNanos(NotfisStage stage, double percentile) {
+        final AtomicLongArray histogram = histograms[stage.ordinal()];
+        final long count = getStageCount(stage);
+        if (count == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram.get(i);
+            if (seen >= target) {
+                return i >= 63 ? Long.MAX_VALUE : (1L << i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public long getRecordCount(String identifier) {
+        final LongAdder adder = records.get(identifier);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public Map<String, Long> getRecordCounts() {
+        final Map<String, Long> snapshot = new HashMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : records.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getFieldsSanitized() {
+        return fieldsSanitized.sum();
+    }
+
+    public long getFieldsTruncated() {
+        return fieldsTruncated.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos <= 1) {
+            return 0;
+        }
+        // menor i tal que nanos <= 2^i
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos - 1));
+    }
+}
@@ -0,0 +1,209 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Leitor de arquivos notfis 3.1/5.0 recebidos. O arquivo é mapeado em
+ * memória ({@link FileChannel#map}) em janelas, e cada linha é exposta como
+ * um {@link NotfisRecordView} que recorta os campos sob demanda.
+ *
+ * <pre>
+ * try (var reader = NotfisReader.open(path, NotfisType.VERSION50)) {
+ *     reader.records()
+ *             .filter(r -&gt; r.getRegistration() == 505)
+ *             .forEach(r -&gt; process(r.getString("SÉRIE DA NOTA FISCAL")));
+ * }
+ * </pre>
+ */
+public final class NotfisReader implements Closeable, Iterable<NotfisRecordView> {
+    static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final NotfisRecordLayout[] records;
+
+    private NotfisReader(FileChannel channel, NotfisLayout layout, long windowSize) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.records = new NotfisRecordLayout[1000];
+
+        for (final String identifier : layout.getIdentifiers()) {
+            final NotfisRecordLayout record = layout.getRecord(identifier);
+            final int registration = record.getRegistration();
+            if (identifier.length() == 3 && registration >= 0 && registration < records.length) {
+                records[registration] = record;
+            }
+        }
+    }
+
+    public static NotfisReader open(Path path, NotfisType type) throws NotfisException {
+        return open(path, NotfisLayouts.get(type));
+    }
+
+    public static NotfisReader open(Path path, NotfisLayout layout) throws NotfisException {
+        return open(path, layout, DEFAULT_WINDOW_SIZE);
+    }
+
+    static NotfisReader open(Path path, NotfisLayout layout, long windowSize) throws NotfisException {
+        if (path == null) {
+            throw new NotfisException("Caminho do arquivo nulo.");
+        }
+        if (layout == null) {
+            throw new NotfisException("Layout nulo.");
+        }
+
+        try {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                return new NotfisReader(channel, layout, windowSize);
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao abrir o arquivo: " + path, ex);
+        }
+    }
+
+    /**
+     * Percorre as linhas do arquivo. Erros de E/S são lançados como
+     * {@link UncheckedIOException}.
+     */
+    @Override
+    public Iterator<NotfisRecordView> iterator() {
+        return new RecordIterator();
+    }
+
+    public Stream<NotfisRecordView> records() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private NotfisRecordLayout recordFor(MappedByteBuffer buffer, int offset, int length) {
+        if (length < 3) {
+            return null;
+        }
+
+        int registration = 0;
+        for (int i = 0; i < 3; i++) {
+            final byte b = buffer.get(offset + i);
+            if (b < '0' || b > '9') {
+                return null;
+            }
+            registration = registration * 10 + (b - '0');
+        }
+        return records[registration];
+    }
+
+    private final class RecordIterator implements Iterator<NotfisRecordView> {
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int position;
+        private long lineNumber;
+        private NotfisRecordView next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public NotfisRecordView next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final NotfisRecordView current = next;
+            next = null;
+            return current;
+        }
+
+        private NotfisRecordView advance() {
+            try {
+                while (true) {
+                    if (window == null || position >= window.limit()) {
+                        if (!map(window == null ? 0 : windowStart + position)) {
+                            return null;
+                        }
+                    }
+
+                    int end = indexOfNewline(position);
+                    if (end < 0) {
+                        final boolean lastWindow = windowStart + window.limit() >= fileSize;
+                        if (!lastWindow) {
+                            if (position == 0) {
+                                throw new IOException("Linha maior que a janela de leitura na linha "
+                                        + (lineNumber + 1));
+                            }
+                            map(windowStart + position); // linha atravessa a janela: remapeia a partir dela
+                            continue;
+                        }
+                        end = window.limit();
+                    }
+
+                    final int start = position;
+                    position = end + 1;
+                    lineNumber++;
+
+                    int length = end - start;
+                    if (length > 0 && window.get(start + length - 1) == '\r') {
+                        length--;
+                    }
+                    if (length == 0) {
+                        continue;
+                    }
+
+                    return new NotfisRecordView(window, start, length, lineNumber,
+                            recordFor(window, start, length));
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private boolean map(long start) throws IOException {
+            if (start >= fileSize) {
+                return false;
+            }
+            final long size = Math.min(windowSize, fileSize - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            windowStart = start;
+            position = 0;
+            return true;
+        }
+
+        private int indexOfNewline(int from) {
+            final int limit = window.limit();
+            for (int i = from; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
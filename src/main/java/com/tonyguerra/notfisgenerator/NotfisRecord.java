@@ -0,0 +1,24 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca uma classe cujas instâncias viram linhas do registro informado, por
+ * exemplo {@code @NotfisRecord("313")}. Os campos e métodos da classe são
+ * associados ao layout com {@link NotfisColumn}.
+ *
+ * @see NotfisMapper
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface NotfisRecord {
+    /**
+     * Identificador do registro no layout (ex: "313").
+     */
+    String value();
+}
@@ -0,0 +1,130 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Monta linhas de um registro escrevendo os valores direto nos bytes da
+ * linha, sem {@link NotfisParam}, boxing ou {@link String} intermediária.
+ * Valores {@code long} são o valor lógico do campo: em um campo com 2 casas
+ * decimais implícitas, {@code 12L} vira "1200".
+ *
+ * <pre>
+ * final NotfisRecordBuilder nf = writer.record("313");
+ * lines.add(nf.set("NÚMERO DA NOTA FISCAL", 12345L)
+ *         .set("SÉRIE DA NOTA FISCAL", "1")
+ *         .build());
+ * </pre>
+ *
+ * O builder pode ser reaproveitado: após {@link #build()} ele recomeça com uma
+ * linha em branco. Não é thread-safe.
+ */
+public final class NotfisRecordBuilder {
+    private final NotfisRecordLayout layout;
+    private final NotfisSanitizer sanitizer;
+    private final boolean[] present;
+    private byte[] line;
+
+    NotfisRecordBuilder(NotfisRecordLayout layout, NotfisSanitizer sanitizer) {
+        this.layout = layout;
+        this.sanitizer = sanitizer;
+        this.present = new boolean[layout.getFieldCount()];
+    }
+
+    public NotfisRecordLayout getLayout() {
+        return layout;
+    }
+
+    public NotfisRecordBuilder set(String name, long value) throws NotfisException {
+        return set(slot(name), value);
+    }
+
+    public NotfisRecordBuilder set(String name, int value) throws NotfisException {
+        return set(slot(name), (long) value);
+    }
+
+    public NotfisRecordBuilder set(String name, CharSequence value) throws NotfisException {
+        return set(slot(name), value);
+    }
+
+    public NotfisRecordBuilder set(String name, BigDecimal value) throws NotfisException {
+        return set(slot(name), value);
+    }
+
+    /**
+     * Versão por índice, para quem já resolveu o slot com
+     * {@link NotfisRecordLayout#slotOf(String)}.
+     */
+    public NotfisRecordBuilder set(int slot, long value) {
+        layout.writeLong(line(), 0, slot, value);
+        present[slot] = true;
+        return this;
+    }
+
+    public NotfisRecordBuilder set(int slot, BigDecimal value) throws NotfisException {
+        if (value == null) {
+            throw new NotfisException("Valor nulo encontrado no campo '" + layout.getFieldName(slot)
+                    + "' no identificador " + layout.getIdentifier());
+        }
+
+        layout.writeDecimal(line(), 0, slot, value);
+        present[slot] = true;
+        return this;
+    }
+
+    public NotfisRecordBuilder set(int slot, CharSequence value) throws NotfisException {
+        if (value == null) {
+            throw new NotfisException("Valor nulo encontrado no campo '" + layout.getFieldName(slot)
+                    + "' no identificador " + layout.getIdentifier());
+        }
+
+        if (layout.getFieldDecimals(slot) > 0 && layout.getFieldFormat(slot) == NotfisFieldType.NUMERIC) {
+            layout.writeDecimal(line(), 0, slot, layout.parseDecimal(slot, value));
+        } else {
+            layout.writeText(line(), 0, slot, value, sanitizer);
+        }
+        present[slot] = true;
+        return this;
+    }
+
+    /**
+     * Valida os campos obrigatórios e devolve a linha montada. O builder volta
+     * ao estado inicial.
+     */
+    public NotfisLine build() throws NotfisException {
+        for (int i = 0; i < present.length; i++) {
+            if (!present[i] && layout.isFieldMandatory(i)) {
+                throw new NotfisException("Campo obrigatório '" + layout.getFieldName(i)
+                        + "' não encontrado no identificador " + layout.getIdentifier());
+            }
+        }
+
+        final NotfisLine built = new NotfisLine(layout, line());
+        reset();
+        return built;
+    }
+
+    public void reset() {
+        line = null;
+        Arrays.fill(present, false);
+    }
+
+    private byte[] line() {
+        if (line == null) {
+            line = new byte[layout.getWidth()];
+            layout.blank(line, 0);
+        }
+        return line;
+    }
+
+    private int slot(String name) throws NotfisException {
+        final int slot = layout.slotOf(name);
+        if (slot < 0) {
+            throw new NotfisException("Campo '" + name + "' não encontrado no identificador "
+                    + layout.getIdentifier());
+        }
+        return slot;
+    }
+}
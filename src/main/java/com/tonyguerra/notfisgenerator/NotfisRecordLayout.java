@@ -0,0 +1,347 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Layout compilado de um identificador de registro (ex: "313", "505").
+ * Guarda a largura do registro, um template de bytes já preenchido com
+ * espaços e a tabela de offset/tamanho/formato de cada campo, de forma que
+ * renderizar uma linha seja uma cópia do template mais escritas diretas.
+ */
+public final class NotfisRecordLayout {
+    private static final byte BLANK = ' ';
+
+    private final String identifier;
+    private final int registration;
+    private final List<NotfisConfigField> fields;
+    private final int width;
+    private final byte[] template;
+    private final String[] names;
+    private final NotfisFieldType[] formats;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final boolean[] mandatory;
+    private final int[] decimals;
+    private final Map<String, Integer> slots;
+
+    NotfisRecordLayout(String identifier, List<NotfisConfigField> fields) {
+        this.identifier = identifier;
+        this.registration = NotfisLine.parseRegistration(identifier);
+        this.fields = Collections.unmodifiableList(new ArrayList<NotfisConfigField>(fields));
+
+        final int count = this.fields.size();
+        this.names = new String[count];
+        this.formats = new NotfisFieldType[count];
+        this.offsets = new int[count];
+        this.sizes = new int[count];
+        this.mandatory = new boolean[count];
+        this.decimals = new int[count];
+        this.slots = new HashMap<String, Integer>(count * 2);
+
+        int maxWidth = 0;
+        for (int i = 0; i < count; i++) {
+            final NotfisConfigField cfg = this.fields.get(i);
+            names[i] = cfg.getName();
+            formats[i] = cfg.getFormat();
+            offsets[i] = cfg.getPosition() - 1;
+            sizes[i] = cfg.getSize();
+            mandatory[i] = cfg.isMandatory();
+            decimals[i] = cfg.getDecimals();
+            slots.putIfAbsent(cfg.getName(), i);
+
+            final int end = offsets[i] + sizes[i];
+            if (end > maxWidth) {
+                maxWidth = end;
+            }
+        }
+
+        this.width = maxWidth;
+        this.template = new byte[maxWidth];
+        Arrays.fill(this.template, BLANK);
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public int getRegistration() {
+        return registration;
+    }
+
+    public List<NotfisConfigField> getFields() {
+        return fields;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    /**
+     * Retorna o índice (slot) do campo com o nome informado, ou {@code -1} se
+     * o campo não existir neste registro.
+     */
+    public int slotOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        final Integer slot = slots.get(name);
+        return slot == null ? -1 : slot.intValue();
+    }
+
+    public String getFieldName(int index) {
+        return names[index];
+    }
+
+    public NotfisFieldType getFieldFormat(int index) {
+        return formats[index];
+    }
+
+    public int getFieldOffset(int index) {
+        return offsets[index];
+    }
+
+    public int getFieldSize(int index) {
+        return sizes[index];
+    }
+
+    public boolean isFieldMandatory(int index) {
+        return mandatory[index];
+    }
+
+    public int getFieldDecimals(int index) {
+        return decimals[index];
+    }
+
+    /**
+     * Associa um parâmetro ao seu slot. Parâmetros desconhecidos são ignorados
+     * e, para nomes repetidos, vale o primeiro.
+     */
+    void bind(Object[] values, String name, Object value) throws NotfisException {
+        final int slot = slotOf(name);
+        if (slot < 0 || values[slot] != null) {
+            return; // campo desconhecido ou já preenchido
+        }
+
+        if (value == null) {
+            throw new NotfisException("Valor nulo encontrado no campo '" + name
+                    + "' no identificador " + identifier);
+        }
+
+        values[slot] = coerce(slot, value);
+    }
+
+    /**
+     * Texto em campo numérico com casas decimais implícitas vira
+     * {@link BigDecimal}, para ser escalado como um número ("12.5" com 2 casas
+     * vira 1250). Os demais valores passam sem mudança.
+     */
+    Object coerce(int slot, Object value) throws NotfisException {
+        if (decimals[slot] > 0 && formats[slot] == NotfisFieldType.NUMERIC && value instanceof CharSequence) {
+            return parseDecimal(slot, (CharSequence) value);
+        }
+        return value;
+    }
+
+    BigDecimal parseDecimal(int slot, CharSequence value) throws NotfisException {
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException ex) {
+            throw new NotfisException("Valor '" + value + "' não é numérico no campo '" + names[slot]
+                    + "' no identificador " + identifier);
+        }
+    }
+
+    void checkMandatory(Object[] values) throws NotfisException {
+        for (int f = 0; f < values.length; f++) {
+            if (values[f] == null && mandatory[f]) {
+                throw new NotfisException("Campo obrigatório '" + names[f]
+                        + "' não encontrado no identificador " + identifier);
+            }
+        }
+    }
+
+    /**
+     * Renderiza a linha em {@code dest} a partir de {@code off}, escrevendo
+     * exatamente {@link #getWidth()} bytes. {@code values} é indexado pela
+     * posição do campo no layout e contém os valores brutos, sanitizados aqui
+     * mesmo; valores nulos ficam em branco.
+     */
+    void render(Object[] values, byte[] dest, int off, NotfisSanitizer sanitizer, NotfisRenderStats stats) {
+        System.arraycopy(template, 0, dest, off, width);
+
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+
+            if (formats[i] == NotfisFieldType.NUMERIC && value instanceof Number) {
+                final boolean fits = writeNumber(dest, off, i, (Number) value);
+                if (stats != null && !fits) {
+                    stats.truncated++;
+                }
+            } else {
+                final CharSequence v = value instanceof CharSequence ? (CharSequence) value : value.toString();
+                writeText(dest, off, i, v, sanitizer);
+
+                if (stats != null) {
+                    final int flags = sanitizer.inspect(v, sizes[i]);
+                    if ((flags & NotfisSanitizer.SANITIZED) != 0) {
+                        stats.sanitized++;
+                    }
+                    if ((flags & NotfisSanitizer.TRUNCATED) != 0) {
+                        stats.truncated++;
+                    }
+                }
+            }
+        }
+    }
+
+    void render(Object[] values, byte[] dest, int off) {
+        render(values, dest, off, NotfisSanitizer.ASCII, null);
+    }
+
+    /**
+     * Copia o template em branco para {@code dest} a partir de {@code off}.
+     */
+    void blank(byte[] dest, int off) {
+        System.arraycopy(template, 0, dest, off, width);
+    }
+
+    /**
+     * Escreve {@code value} no campo {@code slot}, aplicando as casas decimais
+     * implícitas do campo (12.5 com 2 casas vira 1250). Inteiros não passam
+     * por {@code double}; decimais são arredondados com
+     * {@link RoundingMode#HALF_UP}. Retorna {@code false} se o valor não coube
+     * no campo e foi cortado.
+     */
+    boolean writeNumber(byte[] dest, int off, int slot, Number value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return writeLong(dest, off, slot, value.longValue());
+        }
+        if (value instanceof BigDecimal) {
+            return writeDecimal(dest, off, slot, (BigDecimal) value);
+        }
+        if (value instanceof BigInteger) {
+            return writeDecimal(dest, off, slot, new BigDecimal((BigInteger) value));
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return writeDecimal(dest, off, slot, BigDecimal.valueOf(value.doubleValue()));
+        }
+        return writeDecimal(dest, off, slot, new BigDecimal(value.toString()));
+    }
+
+    boolean writeLong(byte[] dest, int off, int slot, long value) {
+        long scaled = value;
+        for (int d = 0; d < decimals[slot]; d++) {
+            if (Math.abs(scaled) > Long.MAX_VALUE / 10) {
+                return writeDecimal(dest, off, slot, BigDecimal.valueOf(value));
+            }
+            scaled *= 10;
+        }
+        return writeUnscaled(dest, off, slot, scaled);
+    }
+
+    boolean writeDecimal(byte[] dest, int off, int slot, BigDecimal value) {
+        final BigDecimal unscaled = value.movePointRight(decimals[slot]).setScale(0, RoundingMode.HALF_UP);
+        if (unscaled.unscaledValue().bitLength() < 64) {
+            return writeUnscaled(dest, off, slot, unscaled.longValue());
+        }
+        // não cabe em long; nenhum campo do layout comporta tantos dígitos
+        writeText(dest, off, slot, unscaled.toPlainString(), NotfisSanitizer.ASCII);
+        return false;
+    }
+
+    /**
+     * Escreve o inteiro já escalado. Campos numéricos ficam alinhados à direita
+     * com zeros à esquerda; alfanuméricos, à esquerda com espaços. Se não couber,
+     * mantém os dígitos mais à esquerda e retorna {@code false}.
+     */
+    boolean writeUnscaled(byte[] dest, int off, int slot, long value) {
+        final int start = off + offsets[slot];
+        final int size = sizes[slot];
+
+        final boolean negative = value < 0;
+        final int sign = negative ? 1 : 0;
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+
+        final boolean fits = digits + sign <= size;
+
+        if (fits && formats[slot] == NotfisFieldType.NUMERIC) {
+            int pos = start + size - 1;
+            long v = value;
+            do {
+                dest[pos--] = (byte) ('0' + Math.abs(v % 10));
+                v /= 10;
+            } while (v != 0);
+            while (pos >= start) {
+                dest[pos--] = '0';
+            }
+            if (negative) {
+                dest[start] = '-';
+            }
+            return true;
+        }
+
+        Arrays.fill(dest, start, start + size, BLANK);
+        if (negative && size > 0) {
+            dest[start] = '-';
+        }
+
+        // escreve da direita para a esquerda, descartando o que passar do campo
+        long v = value;
+        for (int i = digits + sign - 1; i >= sign; i--) {
+            if (i < size) {
+                dest[start + i] = (byte) ('0' + Math.abs(v % 10));
+            }
+            v /= 10;
+        }
+        return fits;
+    }
+
+    /**
+     * Escreve {@code value} sanitizado no campo {@code slot} da linha que começa
+     * em {@code off}. Em campos numéricos o texto é alinhado à direita com
+     * zeros à esquerda, quando couber.
+     */
+    void writeText(byte[] dest, int off, int slot, CharSequence value, NotfisSanitizer sanitizer) {
+        final int start = off + offsets[slot];
+        final int size = sizes[slot];
+
+        if (formats[slot] == NotfisFieldType.NUMERIC) {
+            final int length = sanitizer.length(value);
+            if (length <= size) {
+                Arrays.fill(dest, start, start + size - length, (byte) '0');
+                sanitizer.write(value, dest, start + size - length, length);
+                return;
+            }
+        }
+
+        Arrays.fill(dest, start, start + size, BLANK);
+        sanitizer.write(value, dest, start, size);
+    }
+
+    /**
+     * Cria um builder de linhas deste registro.
+     */
+    public NotfisRecordBuilder newBuilder() {
+        return new NotfisRecordBuilder(this, NotfisSanitizer.ASCII);
+    }
+}
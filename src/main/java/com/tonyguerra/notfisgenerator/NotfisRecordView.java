@@ -0,0 +1,164 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Visão leve de uma linha lida pelo {@link NotfisReader}. Os campos são
+ * recortados do buffer mapeado somente quando solicitados; nenhuma
+ * {@link String} é criada até lá.
+ *
+ * Registros cujo identificador não existe no layout têm {@link #getLayout()}
+ * nulo e só permitem acesso à linha bruta.
+ */
+public final class NotfisRecordView {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private final long lineNumber;
+    private final NotfisRecordLayout layout;
+
+    NotfisRecordView(ByteBuffer buffer, int offset, int length, long lineNumber, NotfisRecordLayout layout) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.lineNumber = lineNumber;
+        this.layout = layout;
+    }
+
+    public NotfisRecordLayout getLayout() {
+        return layout;
+    }
+
+    public String getIdentifier() {
+        return layout != null ? layout.getIdentifier() : decode(0, Math.min(3, length), false);
+    }
+
+    public int getRegistration() {
+        return layout != null ? layout.getRegistration() : NotfisLine.parseRegistration(getIdentifier());
+    }
+
+    /**
+     * Número da linha no arquivo, começando em 1.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getRawLine() {
+        return decode(0, length, false);
+    }
+
+    public String getString(String name) {
+        return getString(slot(name));
+    }
+
+    /**
+     * Valor do campo sem os espaços à direita.
+     */
+    public String getString(int slot) {
+        checkLayout();
+        final int start = layout.getFieldOffset(slot);
+        return decode(start, fieldEnd(slot, start), true);
+    }
+
+    public long getLong(String name) {
+        return getLong(slot(name));
+    }
+
+    /**
+     * Valor numérico do campo. Espaços são ignorados e um campo em branco vale
+     * zero.
+     *
+     * @throws NumberFormatException se o campo contiver caracteres não numéricos
+     */
+    public long getLong(int slot) {
+        checkLayout();
+        final int start = layout.getFieldOffset(slot);
+        final int end = fieldEnd(slot, start);
+
+        long value = 0;
+        boolean negative = false;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(offset + i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            } else if (b == '-' && value == 0 && !negative) {
+                negative = true;
+            } else if (b != ' ') {
+                throw new NumberFormatException("Campo '" + layout.getFieldName(slot)
+                        + "' não numérico na linha " + lineNumber);
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    public BigDecimal getDecimal(String name) {
+        return getDecimal(slot(name));
+    }
+
+    /**
+     * Valor numérico do campo considerando as casas decimais implícitas do
+     * layout ("1250" com 2 casas vira 12.50).
+     */
+    public BigDecimal getDecimal(int slot) {
+        return BigDecimal.valueOf(getLong(slot), layout.getFieldDecimals(slot));
+    }
+
+    public boolean isBlank(String name) {
+        return isBlank(slot(name));
+    }
+
+    public boolean isBlank(int slot) {
+        checkLayout();
+        final int start = layout.getFieldOffset(slot);
+        final int end = fieldEnd(slot, start);
+        for (int i = start; i < end; i++) {
+            if (buffer.get(offset + i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(String name) {
+        checkLayout();
+        final int slot = layout.slotOf(name);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Campo '" + name + "' não existe no identificador "
+                    + layout.getIdentifier());
+        }
+        return slot;
+    }
+
+    private int fieldEnd(int slot, int start) {
+        // linhas mais curtas que o layout: o que falta conta como branco
+        return Math.max(start, Math.min(start + layout.getFieldSize(slot), length));
+    }
+
+    private void checkLayout() {
+        if (layout == null) {
+            throw new IllegalStateException("Identificador de registro não encontrado na configuração na linha "
+                    + lineNumber);
+        }
+    }
+
+    private String decode(int start, int end, boolean trimRight) {
+        if (trimRight) {
+            while (end > start && buffer.get(offset + end - 1) == ' ') {
+                end--;
+            }
+        }
+
+        final byte[] bytes = new byte[Math.max(0, end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
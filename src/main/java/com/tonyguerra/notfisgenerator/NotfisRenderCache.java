@@ -0,0 +1,234 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache LRU de linhas já renderizadas, para arquivos em que os mesmos
+ * registros (ex: 311 do embarcador, 312/501/502 das partes) se repetem
+ * com valores idênticos em milhares de notas. A chave é o registro mais os
+ * valores vinculados; num acerto a linha não passa pela sanitização nem pela
+ * renderização, só por uma cópia dos bytes.
+ *
+ * A consulta acontece na renderização (inclusive nos blocos paralelos), e o
+ * cache é dividido em segmentos com travas próprias. Informe os registros
+ * que de fato se repetem para que os demais (ex: notas 313/505, quase
+ * sempre únicas) nem consultem o cache.
+ *
+ * Só entram no cache linhas cujos valores são imutáveis ({@link String},
+ * números e afins); linhas do {@link NotfisRecordBuilder}, já renderizadas,
+ * não passam por ele. Uma instância pode ser compartilhada por vários
+ * writers e threads, e os contadores acumulam entre gerações.
+ *
+ * @see NotfisWriterOptions#withRenderCache(NotfisRenderCache)
+ */
+public final class NotfisRenderCache {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_ENTRIES = 256;
+
+    private final int maxEntries;
+    private final Set<String> identifiers;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param identifiers registros que passam pelo cache; nenhum = todos
+     */
+    public NotfisRenderCache(int maxEntries, String... identifiers) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries deve ser maior que zero.");
+        }
+        this.maxEntries = maxEntries;
+        this.identifiers = identifiers == null || identifiers.length == 0
+                ? null
+                : new HashSet<String>(Arrays.asList(identifiers));
+
+        // caches pequenos ficam num segmento só, com LRU exato
+        this.segments = new Segment[Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_ENTRIES))];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(maxEntries / segments.length + (i < maxEntries % segments.length ? 1 : 0));
+        }
+    }
+
+    /**
+     * Escreve a linha em {@code dest}: do cache, num acerto, ou renderizada
+     * agora e guardada. Devolve {@code false}, sem escrever nada, se a linha
+     * não passa pelo cache.
+     */
+    boolean renderTo(NotfisLine line, byte[] dest, int off, NotfisSanitizer sanitizer, NotfisRenderStats stats) {
+        final Object[] values = line.getValues();
+        final NotfisRecordLayout record = line.getLayout();
+        if (values == null || identifiers != null && !identifiers.contains(record.getIdentifier())
+                || !cacheable(values)) {
+            return false;
+        }
+
+        final Key key = new Key(record, sanitizer, values);
+        final Segment segment = segments[((key.hash ^ (key.hash >>> 16)) & 0x7fffffff) % segments.length];
+        final int width = record.getWidth();
+
+        final Entry cached = segment.get(key);
+        // sem medição na primeira renderização, os contadores precisam de uma nova
+        if (cached != null && (stats == null || cached.measured)) {
+            hits.increment();
+            System.arraycopy(cached.bytes, 0, dest, off, width);
+            if (stats != null) {
+                stats.sanitized += cached.sanitized;
+                stats.truncated += cached.truncated;
+            }
+            return true;
+        }
+        misses.increment();
+
+        final long sanitized = stats != null ? stats.sanitized : 0L;
+        final long truncated = stats != null ? stats.truncated : 0L;
+        record.render(values, dest, off, sanitizer, stats);
+
+        final byte[] bytes = Arrays.copyOfRange(dest, off, off + width);
+        segment.put(key, stats != null
+                ? new Entry(bytes, true, (int) (stats.sanitized - sanitized), (int) (stats.truncated - truncated))
+                : new Entry(bytes, false, 0, 0));
+        return true;
+    }
+
+    private static boolean cacheable(Object[] values) {
+        for (final Object value : values) {
+            if (value != null && !(value instanceof String || value instanceof Long || value instanceof Integer
+                    || value instanceof BigDecimal || value instanceof Short || value instanceof Byte
+                    || value instanceof BigInteger || value instanceof Double || value instanceof Float
+                    || value instanceof Character || value instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Esvazia o cache; os contadores são mantidos.
+     */
+    public void clear() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NotfisRenderCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + "]";
+    }
+
+    /**
+     * Parte do cache, LRU e com trava própria.
+     */
+    private final class Segment {
+        private final LinkedHashMap<Key, Entry> entries;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized Entry get(Key key) {
+            return entries.get(key);
+        }
+
+        private synchronized void put(Key key, Entry entry) {
+            entries.put(key, entry);
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+    }
+
+    private static final class Key {
+        private final NotfisRecordLayout record;
+        private final NotfisSanitizer sanitizer;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(NotfisRecordLayout record, NotfisSanitizer sanitizer, Object[] values) {
+            this.record = record;
+            this.sanitizer = sanitizer;
+            this.values = values;
+            this.hash = (System.identityHashCode(record) * 31 + System.identityHashCode(sanitizer)) * 31
+                    + Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && record == other.record && sanitizer == other.sanitizer
+                    && Arrays.equals(values, other.values);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final boolean measured;
+        private final int sanitized;
+        private final int truncated;
+
+        private Entry(byte[] bytes, boolean measured, int sanitized, int truncated) {
+            this.bytes = bytes;
+            this.measured = measured;
+            this.sanitized = sanitized;
+            this.truncated = truncated;
+        }
+    }
+}
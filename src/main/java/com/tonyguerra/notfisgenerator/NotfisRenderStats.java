@@ -0,0 +1,39 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contadores de uma renderização. Só é criado quando há um
+ * {@link NotfisListener} configurado; cada bloco paralelo usa o seu e eles
+ * são somados ao final.
+ */
+final class NotfisRenderStats {
+    private final Map<String, long[]> records = new HashMap<String, long[]>();
+    long bytes;
+    long sanitized;
+    long truncated;
+
+    void countLine(NotfisRecordLayout record, int bytesWritten) {
+        records.computeIfAbsent(record.getIdentifier(), k -> new long[1])[0]++;
+        bytes += bytesWritten;
+    }
+
+    void merge(NotfisRenderStats other) {
+        for (Map.Entry<String, long[]> entry : other.records.entrySet()) {
+            records.computeIfAbsent(entry.getKey(), k -> new long[1])[0] += entry.getValue()[0];
+        }
+        bytes += other.bytes;
+        sanitized += other.sanitized;
+        truncated += other.truncated;
+    }
+
+    void report(NotfisListener listener) {
+        for (Map.Entry<String, long[]> entry : records.entrySet()) {
+            listener.onRecords(entry.getKey(), entry.getValue()[0]);
+        }
+        listener.onBytesWritten(bytes);
+        listener.onFieldsSanitized(sanitized);
+        listener.onFieldsTruncated(truncated);
+    }
+}
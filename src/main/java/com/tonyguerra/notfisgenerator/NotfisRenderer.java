@@ -0,0 +1,421 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renderiza linhas já ordenadas no {@link OutputStream}, sequencialmente ou
+ * em blocos paralelos remontados na ordem original. Como a largura de cada
+ * registro é fixa, também escreve direto em posições conhecidas de um array
+ * ou arquivo.
+ */
+final class NotfisRenderer {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private NotfisRenderer() {
+    }
+
+    static void render(NotfisLayout layout, List<NotfisLine> lines, OutputStream outputStream,
+            NotfisWriterOptions options) throws IOException {
+        render(layout, lines, outputStream, options, null);
+    }
+
+    /**
+     * @param stats contadores a preencher, ou {@code null} para não medir nada
+     */
+    static void render(NotfisLayout layout, List<NotfisLine> lines, OutputStream outputStream,
+            NotfisWriterOptions options, NotfisRenderStats stats) throws IOException {
+        if (options.isParallel() && lines.size() > options.getChunkLines()) {
+            renderParallel(lines, outputStream, options, stats, false);
+        } else {
+            renderSequential(layout, lines, outputStream, options, stats);
+        }
+    }
+
+    /**
+     * Igual a {@link #render(NotfisLayout, List, OutputStream, NotfisWriterOptions, NotfisRenderStats)},
+     * mas comprimido em gzip. No modo paralelo cada bloco é comprimido no
+     * executor como um membro gzip independente e os membros são concatenados
+     * em ordem (como o pigz); qualquer leitor gzip, inclusive
+     * {@link java.util.zip.GZIPInputStream}, lê o resultado como um arquivo só.
+     * Os bytes contados em {@code stats} são os não comprimidos.
+     */
+    static void renderGzip(NotfisLayout layout, List<NotfisLine> lines, OutputStream outputStream,
+            NotfisWriterOptions options, NotfisRenderStats stats) throws IOException {
+        if (options.isParallel() && lines.size() > options.getChunkLines()) {
+            renderParallel(lines, outputStream, options, stats, true);
+            return;
+        }
+
+        final GZIPOutputStream gzip = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+        renderSequential(layout, lines, gzip, options, stats);
+        gzip.finish();
+    }
+
+    private static void renderSequential(NotfisLayout layout, List<NotfisLine> lines, OutputStream outputStream,
+            NotfisWriterOptions options, NotfisRenderStats stats) throws IOException {
+        final NotfisSanitizer sanitizer = options.getSanitizer();
+        final NotfisRenderCache cache = options.getRenderCache();
+        final NotfisLineTerminator terminator = options.getLineTerminator();
+        final int eol = terminator.length();
+        byte[] buffer = new byte[layout.getMaxWidth() + eol];
+
+        for (final NotfisLine line : lines) {
+            final NotfisRecordLayout record = line.getLayout();
+            final int width = record.getWidth();
+            if (width == 0) {
+                continue;
+            }
+            if (width + eol > buffer.length) {
+                buffer = new byte[width + eol]; // linha montada com outro layout
+            }
+
+            renderLine(line, buffer, 0, cache, sanitizer, stats);
+            terminator.writeTo(buffer, width);
+            if (stats != null) {
+                stats.countLine(record, width + eol);
+            }
+
+            outputStream.write(buffer, 0, width + eol);
+        }
+    }
+
+    /**
+     * Cada bloco é renderizado em um buffer próprio no executor; os blocos são
+     * escritos na ordem original. No máximo {@code window} blocos ficam em
+     * memória ao mesmo tempo.
+     */
+    private static void renderParallel(List<NotfisLine> lines, OutputStream outputStream,
+            NotfisWriterOptions options, NotfisRenderStats stats, boolean gzip) throws IOException {
+        final int chunkLines = options.getChunkLines();
+        final int window = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        final boolean measure = stats != null;
+        final ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+
+        try {
+            for (int from = 0; from < lines.size(); from += chunkLines) {
+                final int start = from;
+                final int end = Math.min(from + chunkLines, lines.size());
+
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    final NotfisRenderStats chunkStats = measure ? new NotfisRenderStats() : null;
+                    final byte[] chunk = renderChunk(lines, start, end, options, chunkStats);
+                    return new Chunk(gzip ? gzip(chunk) : chunk, chunkStats);
+                }, options.getExecutor()));
+
+                if (pending.size() >= window) {
+                    write(await(pending.poll()), outputStream, stats);
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                write(await(pending.poll()), outputStream, stats);
+            }
+        } finally {
+            for (final CompletableFuture<Chunk> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    static byte[] renderChunk(List<NotfisLine> lines, int from, int to, NotfisWriterOptions options,
+            NotfisRenderStats stats) {
+        final byte[] chunk = new byte[(int) size(lines, from, to, options.getLineTerminator())];
+        renderChunk(lines, from, to, options, stats, chunk, 0);
+        return chunk;
+    }
+
+    /**
+     * Renderiza as linhas {@code [from, to)} em {@code dest} a partir de
+     * {@code offset}, devolvendo a posição seguinte à última linha.
+     */
+    private static int renderChunk(List<NotfisLine> lines, int from, int to, NotfisWriterOptions options,
+            NotfisRenderStats stats, byte[] dest, int offset) {
+        final NotfisSanitizer sanitizer = options.getSanitizer();
+        final NotfisRenderCache cache = options.getRenderCache();
+        final NotfisLineTerminator terminator = options.getLineTerminator();
+        final int eol = terminator.length();
+
+        for (int i = from; i < to; i++) {
+            final NotfisLine line = lines.get(i);
+            final NotfisRecordLayout record = line.getLayout();
+            final int width = record.getWidth();
+            if (width == 0) {
+                continue;
+            }
+
+            renderLine(line, dest, offset, cache, sanitizer, stats);
+            terminator.writeTo(dest, offset + width);
+            if (stats != null) {
+                stats.countLine(record, width + eol);
+            }
+            offset += width + eol;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Renderiza a linha (sem terminador), passando pelo cache quando houver.
+     */
+    static void renderLine(NotfisLine line, byte[] dest, int off, NotfisRenderCache cache,
+            NotfisSanitizer sanitizer, NotfisRenderStats stats) {
+        if (cache == null || !cache.renderTo(line, dest, off, sanitizer, stats)) {
+            line.renderTo(dest, off, sanitizer, stats);
+        }
+    }
+
+    /**
+     * Tamanho exato, em bytes, das linhas {@code [from, to)} já com o
+     * terminador. Como cada registro tem largura fixa, não é preciso
+     * renderizar nada.
+     */
+    static long size(List<NotfisLine> lines, int from, int to, NotfisLineTerminator terminator) {
+        final int eol = terminator.length();
+        long size = 0;
+        for (int i = from; i < to; i++) {
+            final int width = lines.get(i).getLayout().getWidth();
+            if (width > 0) {
+                size += width + eol;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Renderiza todas as linhas em {@code dest}, que deve ter exatamente
+     * {@link #size} bytes. No modo paralelo cada bloco escreve direto na sua
+     * faixa do array, sem cópia nem remontagem.
+     */
+    static void render(List<NotfisLine> lines, byte[] dest, NotfisWriterOptions options, NotfisRenderStats stats)
+            throws IOException {
+        if (!options.isParallel() || lines.size() <= options.getChunkLines()) {
+            renderChunk(lines, 0, lines.size(), options, stats, dest, 0);
+            return;
+        }
+
+        final int chunkLines = options.getChunkLines();
+        final NotfisLineTerminator terminator = options.getLineTerminator();
+        final boolean measure = stats != null;
+        final ArrayDeque<CompletableFuture<NotfisRenderStats>> pending = new ArrayDeque<>();
+
+        try {
+            int offset = 0;
+            for (int from = 0; from < lines.size(); from += chunkLines) {
+                final int start = from;
+                final int end = Math.min(from + chunkLines, lines.size());
+                final int position = offset;
+
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    final NotfisRenderStats chunkStats = measure ? new NotfisRenderStats() : null;
+                    renderChunk(lines, start, end, options, chunkStats, dest, position);
+                    return chunkStats;
+                }, options.getExecutor()));
+
+                offset += (int) size(lines, start, end, terminator);
+            }
+
+            while (!pending.isEmpty()) {
+                merge(stats, await(pending.poll()));
+            }
+        } finally {
+            for (final CompletableFuture<NotfisRenderStats> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Escreve as linhas no arquivo a partir de {@code position}, cada bloco na
+     * sua posição já conhecida. O arquivo é estendido até o tamanho final antes
+     * da renderização; no modo paralelo os próprios blocos escrevem no canal,
+     * fora de ordem, sem passar pela thread chamadora.
+     */
+    static void render(List<NotfisLine> lines, FileChannel channel, long position, NotfisWriterOptions options,
+            NotfisRenderStats stats) throws IOException {
+        final NotfisLineTerminator terminator = options.getLineTerminator();
+        final long total = size(lines, 0, lines.size(), terminator);
+        if (total == 0) {
+            return;
+        }
+
+        // pré-aloca: grava o último byte para o arquivo já nascer com o tamanho final
+        writeFully(channel, ByteBuffer.wrap(new byte[1]), position + total - 1);
+
+        final int chunkLines = options.getChunkLines();
+
+        if (!options.isParallel() || lines.size() <= chunkLines) {
+            byte[] buffer = new byte[0];
+            for (int from = 0; from < lines.size(); from += chunkLines) {
+                final int end = Math.min(from + chunkLines, lines.size());
+                final int length = (int) size(lines, from, end, terminator);
+                if (length > buffer.length) {
+                    buffer = new byte[length];
+                }
+
+                renderChunk(lines, from, end, options, stats, buffer, 0);
+                writeFully(channel, ByteBuffer.wrap(buffer, 0, length), position);
+                position += length;
+            }
+            return;
+        }
+
+        final int window = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        final boolean measure = stats != null;
+        final ArrayDeque<CompletableFuture<NotfisRenderStats>> pending = new ArrayDeque<>();
+
+        try {
+            for (int from = 0; from < lines.size(); from += chunkLines) {
+                final int start = from;
+                final int end = Math.min(from + chunkLines, lines.size());
+                final long chunkPosition = position;
+
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    final NotfisRenderStats chunkStats = measure ? new NotfisRenderStats() : null;
+                    final byte[] chunk = renderChunk(lines, start, end, options, chunkStats);
+                    try {
+                        writeFully(channel, ByteBuffer.wrap(chunk), chunkPosition);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return chunkStats;
+                }, options.getExecutor()));
+
+                position += size(lines, start, end, terminator);
+
+                if (pending.size() >= window) {
+                    merge(stats, await(pending.poll()));
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                merge(stats, await(pending.poll()));
+            }
+        } finally {
+            for (final CompletableFuture<NotfisRenderStats> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Escreve cada lista de linhas no seu arquivo. No modo paralelo cada
+     * arquivo é uma tarefa no executor, renderizada sequencialmente dentro
+     * dela (evita tarefas esperando por outras no mesmo executor).
+     */
+    static void renderFiles(List<List<NotfisLine>> parts, List<Path> paths, NotfisWriterOptions options,
+            NotfisRenderStats stats) throws IOException {
+        final NotfisWriterOptions sequential = options.withParallelRendering(null, options.getChunkLines());
+
+        if (!options.isParallel() || parts.size() == 1) {
+            for (int i = 0; i < parts.size(); i++) {
+                renderFile(parts.get(i), paths.get(i), sequential, stats);
+            }
+            return;
+        }
+
+        final boolean measure = stats != null;
+        final ArrayDeque<CompletableFuture<NotfisRenderStats>> pending = new ArrayDeque<>();
+
+        try {
+            for (int i = 0; i < parts.size(); i++) {
+                final List<NotfisLine> lines = parts.get(i);
+                final Path path = paths.get(i);
+
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    final NotfisRenderStats partStats = measure ? new NotfisRenderStats() : null;
+                    try {
+                        renderFile(lines, path, sequential, partStats);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return partStats;
+                }, options.getExecutor()));
+            }
+
+            while (!pending.isEmpty()) {
+                merge(stats, await(pending.poll()));
+            }
+        } finally {
+            for (final CompletableFuture<NotfisRenderStats> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static void renderFile(List<NotfisLine> lines, Path path, NotfisWriterOptions options,
+            NotfisRenderStats stats) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            render(lines, channel, 0L, options, stats);
+        }
+    }
+
+    private static byte[] gzip(byte[] chunk) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, chunk.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, GZIP_BUFFER_SIZE)) {
+            gzip.write(chunk);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // não ocorre com ByteArrayOutputStream
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void merge(NotfisRenderStats stats, NotfisRenderStats chunkStats) {
+        if (stats != null) {
+            stats.merge(chunkStats);
+        }
+    }
+
+    private static void write(Chunk chunk, OutputStream outputStream, NotfisRenderStats stats) throws IOException {
+        outputStream.write(chunk.bytes);
+        if (stats != null) {
+            stats.merge(chunk.stats);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Renderização paralela interrompida.");
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Erro na renderização paralela.", cause);
+        }
+    }
+
+    private static final class Chunk {
+        private final byte[] bytes;
+        private final NotfisRenderStats stats;
+
+        private Chunk(byte[] bytes, NotfisRenderStats stats) {
+            this.bytes = bytes;
+            this.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sanitização de valores baseada em tabela: cada caractere Latin-1 é mapeado
+ * para um caractere permitido (letra, dígito ou espaço) ou descartado, e
+ * escrito direto como um byte.
+ *
+ * {@link #ASCII} converte acentos para a letra base ("João" -> "Joao") e é
+ * usado para US-ASCII e UTF-8, mantendo a largura fixa em bytes.
+ * {@link #LATIN1} preserva as letras acentuadas do ISO-8859-1.
+ */
+final class NotfisSanitizer {
+    static final NotfisSanitizer ASCII = new NotfisSanitizer(buildTable(false));
+    static final NotfisSanitizer LATIN1 = new NotfisSanitizer(buildTable(true));
+
+    static final int SANITIZED = 1;
+    static final int TRUNCATED = 2;
+
+    private static final char DROP = 0;
+
+    private final char[] table;
+
+    private NotfisSanitizer(char[] table) {
+        this.table = table;
+    }
+
+    static NotfisSanitizer forCharset(Charset charset) {
+        if (StandardCharsets.ISO_8859_1.equals(charset)) {
+            return LATIN1;
+        }
+        if (StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.UTF_8.equals(charset)) {
+            return ASCII;
+        }
+        throw new IllegalArgumentException("Charset não suportado: " + charset
+                + " (use US-ASCII, ISO-8859-1 ou UTF-8).");
+    }
+
+    private static char[] buildTable(boolean keepLatin1) {
+        final char[] table = new char[256];
+
+        for (char c = '0'; c <= '9'; c++)
+            table[c] = c;
+        for (char c = 'A'; c <= 'Z'; c++)
+            table[c] = c;
+        for (char c = 'a'; c <= 'z'; c++)
+            table[c] = c;
+
+        // espaços em branco (\s) viram espaço para não quebrar a largura fixa
+        table[' '] = ' ';
+        table['\t'] = ' ';
+        table['\n'] = ' ';
+        table[0x0B] = ' ';
+        table['\f'] = ' ';
+        table['\r'] = ' ';
+
+        if (keepLatin1) {
+            for (char c = 0xA0; c <= 0xFF; c++) {
+                if (Character.isLetter(c)) {
+                    table[c] = c;
+                }
+            }
+            return table;
+        }
+
+        map(table, "\u00C0\u00C1\u00C2\u00C3\u00C4\u00C5", 'A');
+        map(table, "\u00C7", 'C');
+        map(table, "\u00C8\u00C9\u00CA\u00CB", 'E');
+        map(table, "\u00CC\u00CD\u00CE\u00CF", 'I');
+        map(table, "\u00D1", 'N');
+        map(table, "\u00D2\u00D3\u00D4\u00D5\u00D6\u00D8", 'O');
+        map(table, "\u00D9\u00DA\u00DB\u00DC", 'U');
+        map(table, "\u00DD", 'Y');
+        map(table, "\u00E0\u00E1\u00E2\u00E3\u00E4\u00E5\u00AA", 'a');
+        map(table, "\u00E7", 'c');
+        map(table, "\u00E8\u00E9\u00EA\u00EB", 'e');
+        map(table, "\u00EC\u00ED\u00EE\u00EF", 'i');
+        map(table, "\u00F1", 'n');
+        map(table, "\u00F2\u00F3\u00F4\u00F5\u00F6\u00F8\u00BA", 'o');
+        map(table, "\u00F9\u00FA\u00FB\u00FC", 'u');
+        map(table, "\u00FD\u00FF", 'y');
+
+        return table;
+    }
+
+    private static void map(char[] table, String from, char to) {
+        for (int i = 0; i < from.length(); i++) {
+            table[from.charAt(i)] = to;
+        }
+    }
+
+    /**
+     * Escreve {@code src} sanitizado em {@code dest}, a partir de {@code off},
+     * até no máximo {@code max} bytes. Retorna a quantidade escrita.
+     */
+    int write(CharSequence src, byte[] dest, int off, int max) {
+        int written = 0;
+        final int length = src.length();
+
+        for (int i = 0; i < length && written < max; i++) {
+            final char c = src.charAt(i);
+            if (c > 0xFF) {
+                continue;
+            }
+
+            final char mapped = table[c];
+            if (mapped != DROP) {
+                dest[off + written++] = (byte) mapped;
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Indica, sem escrever nada, se {@code src} seria alterado pela sanitização
+     * ({@link #SANITIZED}) e/ou cortado por exceder {@code max}
+     * ({@link #TRUNCATED}). Usado apenas para métricas.
+     */
+    int inspect(CharSequence src, int max) {
+        int flags = 0;
+        int kept = 0;
+        final int length = src.length();
+
+        for (int i = 0; i < length; i++) {
+            final char c = src.charAt(i);
+            final char mapped = c <= 0xFF ? table[c] : DROP;
+            if (mapped != c) {
+                flags |= SANITIZED;
+            }
+            if (mapped != DROP) {
+                kept++;
+            }
+        }
+
+        if (kept > max) {
+            flags |= TRUNCATED;
+        }
+        return flags;
+    }
+
+    /**
+     * Quantidade de caracteres que sobram após a sanitização.
+     */
+    int length(CharSequence src) {
+        int kept = 0;
+        final int length = src.length();
+
+        for (int i = 0; i < length; i++) {
+            final char c = src.charAt(i);
+            if (c <= 0xFF && table[c] != DROP) {
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,264 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Sessão de gravação incremental: recebe lotes de registros em várias
+ * chamadas e os acrescenta ao arquivo à medida que chegam. A cada
+ * {@code checkpointLines} linhas (e no {@link #close()}) o arquivo é
+ * sincronizado com o disco e um {@link NotfisCheckpoint} é gravado ao lado
+ * dele, em {@code <arquivo>.checkpoint}.
+ *
+ * Ao abrir uma sessão sobre um arquivo que já tem checkpoint, a gravação
+ * continua dali: o que foi escrito depois do último checkpoint (por exemplo,
+ * antes de uma queda) é descartado e os totais são restaurados. Use
+ * {@link #complete()} ao terminar o arquivo para remover o checkpoint. Um
+ * arquivo não vazio sem checkpoint (ex: já concluído) é recusado, nunca
+ * sobrescrito.
+ *
+ * Cada lote é ordenado com {@link NotfisLine#orderLines}; a ordem entre lotes
+ * é a ordem das chamadas. Se a gravação de um lote ou de um checkpoint
+ * falhar, a sessão recusa novas chamadas e o {@link #close()} não grava
+ * checkpoint: reabra para retomar do último confirmado. A sessão não é
+ * thread-safe.
+ */
+public final class NotfisSession implements AutoCloseable {
+    public static final int DEFAULT_CHECKPOINT_LINES = 100_000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final NotfisLayout layout;
+    private final NotfisWriterOptions options;
+    private final Path path;
+    private final Path checkpointPath;
+    private final int checkpointLines;
+    private final FileChannel channel;
+    private final OutputStream outputStream;
+    private final Map<String, Long> recordCounts;
+
+    private long lineCount;
+    private long byteCount;
+    private long linesSinceCheckpoint;
+    private NotfisCheckpoint checkpoint;
+    private boolean closed;
+    private boolean failed;
+
+    private NotfisSession(NotfisLayout layout, NotfisWriterOptions options, Path path, int checkpointLines,
+            FileChannel channel, NotfisCheckpoint checkpoint) {
+        this.layout = layout;
+        this.options = options;
+        this.path = path;
+        this.checkpointPath = checkpointPath(path);
+        this.checkpointLines = checkpointLines;
+        this.channel = channel;
+        this.outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        this.recordCounts = new HashMap<String, Long>(checkpoint.getRecordCounts());
+        this.lineCount = checkpoint.getLineCount();
+        this.byteCount = checkpoint.getByteOffset();
+        this.checkpoint = checkpoint;
+    }
+
+    static NotfisSession open(NotfisLayout layout, NotfisWriterOptions options, Path path, int checkpointLines)
+            throws NotfisException {
+        if (path == null) {
+            throw new NotfisException("Caminho do arquivo nulo.");
+        }
+        if (checkpointLines <= 0) {
+            throw new NotfisException("checkpointLines deve ser maior que zero.");
+        }
+
+        try {
+            final Path checkpointPath = checkpointPath(path);
+            final boolean resuming = Files.exists(checkpointPath);
+            final NotfisCheckpoint checkpoint = resuming
+                    ? NotfisCheckpoint.load(checkpointPath)
+                    : NotfisCheckpoint.EMPTY;
+
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                // sem checkpoint não há como saber onde o arquivo parou (ex: sessão já concluída)
+                if (!resuming && channel.size() > 0) {
+                    throw new NotfisException("Arquivo já existe e não tem checkpoint; apague-o para começar "
+                            + "uma nova sessão: " + path);
+                }
+                if (channel.size() < checkpoint.getByteOffset()) {
+                    throw new NotfisException("Arquivo menor que o checkpoint (" + channel.size() + " < "
+                            + checkpoint.getByteOffset() + " bytes): " + path);
+                }
+
+                // descarta o que foi escrito depois do último checkpoint
+                channel.truncate(checkpoint.getByteOffset());
+                channel.position(checkpoint.getByteOffset());
+
+                return new NotfisSession(layout, options, path, checkpointLines, channel, checkpoint);
+            } catch (NotfisException | IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao abrir a sessão: " + path, ex);
+        }
+    }
+
+    static Path checkpointPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Valida, ordena e acrescenta um lote ao arquivo. Se a validação falhar,
+     * nada do lote é gravado.
+     */
+    public void append(NotfisPayload batch) throws NotfisException {
+        ensureOpen();
+        write(NotfisWriter.checkAllFields(layout, batch));
+    }
+
+    /**
+     * Acrescenta linhas montadas com {@link NotfisWriter#record(String)}.
+     */
+    public void append(List<NotfisLine> lines) throws NotfisException {
+        ensureOpen();
+        write(NotfisWriter.checkLines(lines));
+    }
+
+    private void write(List<NotfisLine> lines) throws NotfisException {
+        final NotfisListener listener = options.getListener();
+        final NotfisRenderStats stats = listener != NotfisListener.NOOP ? new NotfisRenderStats() : null;
+        final List<NotfisLine> ordered = NotfisLine.orderLines(lines);
+
+        // uma falha no meio do lote deixa o arquivo fora dos totais em memória
+        failed = true;
+        try {
+            NotfisRenderer.render(layout, ordered, outputStream, options, stats);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao gravar o arquivo: " + path, ex);
+        }
+        failed = false;
+
+        final int eol = options.getLineTerminator().length();
+        for (final NotfisLine line : ordered) {
+            final NotfisRecordLayout record = line.getLayout();
+            if (record.getWidth() == 0) {
+                continue;
+            }
+            recordCounts.merge(record.getIdentifier(), 1L, Long::sum);
+            byteCount += record.getWidth() + eol;
+            lineCount++;
+            linesSinceCheckpoint++;
+        }
+
+        if (stats != null) {
+            stats.report(listener);
+        }
+
+        if (linesSinceCheckpoint >= checkpointLines) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Descarrega o buffer, sincroniza o arquivo com o disco e grava o
+     * checkpoint.
+     */
+    public NotfisCheckpoint checkpoint() throws NotfisException {
+        ensureOpen();
+
+        try {
+            outputStream.flush();
+            channel.force(false);
+
+            final NotfisCheckpoint current = new NotfisCheckpoint(lineCount, byteCount, recordCounts);
+            current.store(checkpointPath);
+
+            this.checkpoint = current;
+            this.linesSinceCheckpoint = 0;
+            return current;
+        } catch (IOException ex) {
+            failed = true;
+            throw new NotfisException("Erro ao gravar o checkpoint: " + checkpointPath, ex);
+        }
+    }
+
+    /**
+     * Último checkpoint gravado (ou restaurado na abertura).
+     */
+    public NotfisCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Fecha a sessão e remove o checkpoint: o arquivo está completo e uma
+     * nova sessão sobre o mesmo caminho começará do zero.
+     */
+    public void complete() throws NotfisException {
+        if (failed) {
+            close();
+            throw new NotfisException("Sessão falhou; reabra para retomar do último checkpoint: " + path);
+        }
+        close();
+
+        try {
+            Files.deleteIfExists(checkpointPath);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao remover o checkpoint: " + checkpointPath, ex);
+        }
+    }
+
+    /**
+     * Grava um checkpoint final e fecha o arquivo. Uma nova sessão sobre o
+     * mesmo caminho continua a partir daqui; depois de uma falha, continua do
+     * último checkpoint confirmado.
+     */
+    @Override
+    public void close() throws NotfisException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (!failed) {
+                checkpoint();
+            }
+        } finally {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                throw new NotfisException("Erro ao fechar o arquivo: " + path, ex);
+            }
+        }
+    }
+
+    private void ensureOpen() throws NotfisException {
+        if (closed) {
+            throw new NotfisException("Sessão encerrada.");
+        }
+        if (failed) {
+            throw new NotfisException("Sessão falhou; reabra para retomar do último checkpoint: " + path);
+        }
+    }
+}
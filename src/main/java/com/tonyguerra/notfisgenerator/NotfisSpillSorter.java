@@ -0,0 +1,238 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ordenação externa: cada linha é renderizada assim que chega e guardada no
+ * "run" do seu registro. Quando os runs em memória passam do orçamento, são
+ * descarregados em arquivos temporários (um por registro). No final os runs
+ * são lidos de volta sequencialmente na ordem de {@link NotfisLine#orderLines},
+ * que só depende de quantas linhas cada registro tem.
+ *
+ * Cada linha é gravada como 2 bytes de largura seguidos dos bytes da linha,
+ * sem o terminador.
+ */
+final class NotfisSpillSorter implements Closeable {
+    private static final int MIN_READ_BUFFER = 4 * 1024;
+    private static final int MAX_READ_BUFFER = 64 * 1024;
+    private static final int RUN_BUFFER = 1024;
+
+    private final NotfisSanitizer sanitizer;
+    private final NotfisRenderCache cache;
+    private final NotfisLineTerminator terminator;
+    private final long memoryBudget;
+    private final Path directory;
+    private final NotfisRenderStats stats;
+    private final Map<Integer, Run> runs = new HashMap<Integer, Run>();
+
+    private long buffered;
+    private int maxWidth;
+
+    NotfisSpillSorter(NotfisWriterOptions options, NotfisRenderStats stats) {
+        this.sanitizer = options.getSanitizer();
+        this.cache = options.getRenderCache();
+        this.terminator = options.getLineTerminator();
+        this.memoryBudget = options.getSpillMemoryBudget();
+        this.directory = options.getSpillDirectory();
+        this.stats = stats;
+    }
+
+    void add(NotfisLine line) throws IOException {
+        final NotfisRecordLayout record = line.getLayout();
+        final int width = record.getWidth();
+        if (width == 0) {
+            return;
+        }
+
+        Run run = runs.get(line.getRegistration());
+        if (run == null) {
+            run = new Run(line.getRegistration());
+            runs.put(line.getRegistration(), run);
+        }
+
+        final int offset = run.reserve(width + 2);
+        run.data[offset] = (byte) (width >>> 8);
+        run.data[offset + 1] = (byte) width;
+        NotfisRenderer.renderLine(line, run.data, offset + 2, cache, sanitizer, stats);
+        run.count++;
+
+        if (stats != null) {
+            stats.countLine(record, width + terminator.length());
+        }
+
+        maxWidth = Math.max(maxWidth, width);
+        buffered += width + 2;
+        if (buffered > memoryBudget) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        for (final Run run : runs.values()) {
+            run.spill();
+        }
+        buffered = 0;
+    }
+
+    /**
+     * Escreve todas as linhas recebidas, já ordenadas e com o terminador.
+     */
+    void writeTo(OutputStream outputStream) throws IOException {
+        final int[] registrations = new int[runs.size()];
+        int k = 0;
+        for (final Integer registration : runs.keySet()) {
+            registrations[k++] = registration;
+        }
+        Arrays.sort(registrations);
+
+        final long[] counts = new long[registrations.length];
+        final DataInputStream[] inputs = new DataInputStream[registrations.length];
+        final int readBuffer = (int) Math.max(MIN_READ_BUFFER,
+                Math.min(MAX_READ_BUFFER, memoryBudget / Math.max(1, registrations.length)));
+
+        try {
+            for (int i = 0; i < registrations.length; i++) {
+                final Run run = runs.get(registrations[i]);
+                counts[i] = run.count;
+                inputs[i] = new DataInputStream(run.open(readBuffer));
+            }
+
+            final int eol = terminator.length();
+            final byte[] line = new byte[maxWidth + eol];
+
+            NotfisLine.visitOrder(registrations, counts, i -> {
+                final DataInputStream input = inputs[i];
+                final int width = input.readUnsignedShort();
+                input.readFully(line, 0, width);
+                terminator.writeTo(line, width);
+                outputStream.write(line, 0, width + eol);
+            });
+        } finally {
+            for (final DataInputStream input : inputs) {
+                if (input != null) {
+                    input.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Tamanho exato da saída, com os terminadores.
+     */
+    long size() {
+        long size = 0;
+        for (final Run run : runs.values()) {
+            size += run.bytes + run.count * (terminator.length() - 2L);
+        }
+        return size;
+    }
+
+    /**
+     * Fecha e apaga os arquivos temporários.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final Run run : runs.values()) {
+            try {
+                run.delete();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        runs.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private final class Run {
+        private final int registration;
+        private byte[] data = new byte[RUN_BUFFER];
+        private int size;
+        private long count;
+        private long bytes;
+        private Path file;
+        private FileChannel channel;
+
+        private Run(int registration) {
+            this.registration = registration;
+        }
+
+        private int reserve(int length) {
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+            }
+            final int offset = size;
+            size += length;
+            bytes += length;
+            return offset;
+        }
+
+        private void spill() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            if (channel == null) {
+                file = directory == null
+                        ? Files.createTempFile("notfis-" + registration + "-", ".run")
+                        : Files.createTempFile(directory, "notfis-" + registration + "-", ".run");
+                channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            }
+
+            final ByteBuffer buffer = ByteBuffer.wrap(data, 0, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            size = 0;
+            // o buffer cresceu até o pico do orçamento; mantê-lo em cada registro multiplicaria a memória
+            if (data.length > RUN_BUFFER) {
+                data = new byte[RUN_BUFFER];
+            }
+        }
+
+        /**
+         * Primeiro o que já foi para o disco, depois o que ainda está em
+         * memória; juntos preservam a ordem de chegada.
+         */
+        private InputStream open(int readBuffer) throws IOException {
+            final InputStream memory = new ByteArrayInputStream(data, 0, size);
+            if (file == null) {
+                return memory;
+            }
+            return new SequenceInputStream(new BufferedInputStream(Files.newInputStream(file), readBuffer), memory);
+        }
+
+        private void delete() throws IOException {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
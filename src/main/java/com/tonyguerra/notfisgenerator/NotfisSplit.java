@@ -0,0 +1,115 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IllegalFormatException;
+import java.util.List;
+
+/**
+ * Limites para dividir um payload em vários arquivos
+ * ({@link NotfisWriter#writeFiles}). Imutável: cada {@code withXxx} devolve
+ * uma nova instância. Limites {@code <= 0} ficam desativados.
+ */
+public final class NotfisSplit {
+    public static final String DEFAULT_FILE_NAME = "notfis-%04d.txt";
+
+    private final long maxBytes;
+    private final int maxRecords;
+    private final String record;
+    private final List<String> trailers;
+    private final String fileName;
+
+    private NotfisSplit(long maxBytes, int maxRecords, String record, List<String> trailers, String fileName) {
+        this.maxBytes = maxBytes;
+        this.maxRecords = maxRecords;
+        this.record = record;
+        this.trailers = trailers;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Cada arquivo com no máximo {@code maxBytes} bytes.
+     */
+    public static NotfisSplit byMaxBytes(long maxBytes) {
+        return new NotfisSplit(0L, 0, null, null, DEFAULT_FILE_NAME).withMaxBytes(maxBytes);
+    }
+
+    /**
+     * Cada arquivo com no máximo {@code maxRecords} notas (313 na 3.1, 505 na
+     * 5.0, ou o registro de {@link #withRecord(String)}).
+     */
+    public static NotfisSplit byMaxRecords(int maxRecords) {
+        return new NotfisSplit(0L, 0, null, null, DEFAULT_FILE_NAME).withMaxRecords(maxRecords);
+    }
+
+    public NotfisSplit withMaxBytes(long maxBytes) {
+        return new NotfisSplit(Math.max(0L, maxBytes), maxRecords, record, trailers, fileName);
+    }
+
+    public NotfisSplit withMaxRecords(int maxRecords) {
+        return new NotfisSplit(maxBytes, Math.max(0, maxRecords), record, trailers, fileName);
+    }
+
+    /**
+     * Registro contado por {@link #withMaxRecords(int)}. Obrigatório em
+     * layouts próprios.
+     */
+    public NotfisSplit withRecord(String identifier) {
+        return new NotfisSplit(maxBytes, maxRecords, identifier, trailers, fileName);
+    }
+
+    /**
+     * Registros de rodapé, repetidos em todas as partes. Padrão: 318 na 3.1 e
+     * 519 na 5.0; em layouts próprios, nenhum.
+     */
+    public NotfisSplit withTrailer(String... identifiers) {
+        return new NotfisSplit(maxBytes, maxRecords, record,
+                Collections.unmodifiableList(Arrays.asList(identifiers.clone())), fileName);
+    }
+
+    /**
+     * Nome dos arquivos, no formato de {@link String#format} com o número da
+     * parte (a partir de 1). O padrão precisa gerar um nome diferente por
+     * parte (ex: {@code %d}). Padrão: {@value #DEFAULT_FILE_NAME}.
+     */
+    public NotfisSplit withFileName(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("pattern não pode ser vazio.");
+        }
+
+        final boolean distinct;
+        try {
+            distinct = !String.format(pattern, 1).equals(String.format(pattern, 2));
+        } catch (IllegalFormatException ex) {
+            throw new IllegalArgumentException("pattern inválido: " + pattern, ex);
+        }
+        if (!distinct) {
+            throw new IllegalArgumentException("pattern deve conter o número da parte (ex: %d): " + pattern);
+        }
+        return new NotfisSplit(maxBytes, maxRecords, record, trailers, pattern);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    public String getRecord() {
+        return record;
+    }
+
+    /**
+     * Rodapés informados em {@link #withTrailer}, ou {@code null} para o
+     * padrão da versão.
+     */
+    public List<String> getTrailers() {
+        return trailers;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+}
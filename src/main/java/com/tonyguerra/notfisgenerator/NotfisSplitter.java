@@ -0,0 +1,161 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+/**
+ * Divide linhas já ordenadas por {@link NotfisLine#orderLines} em partes
+ * que são arquivos válidos por si só. A ordem tem três trechos: cabeçalho
+ * (000 e os registros únicos antes dos repetidos, ex: 310/311), rodadas de
+ * registros repetidos (ex: 312/313/314) e, no fim, os registros únicos
+ * restantes. Cada parte repete o cabeçalho e os rodapés (ex: 318) e recebe
+ * rodadas inteiras, então uma nota nunca é separada dos seus registros.
+ *
+ * Outros registros únicos depois das rodadas (ex: um 333 de uma só nota) não
+ * têm como ser associados a uma parte; nesse caso, e quando a própria nota
+ * está no cabeçalho, a divisão é recusada. O rodapé é copiado como está;
+ * totais nele não são recalculados por parte.
+ */
+final class NotfisSplitter {
+    private NotfisSplitter() {
+    }
+
+    static List<Piece> split(List<NotfisLine> ordered, NotfisSplit split, NotfisRecordLayout counted,
+            Set<NotfisRecordLayout> trailers, NotfisLineTerminator terminator) throws NotfisException {
+        final List<Piece> pieces = new ArrayList<Piece>();
+        final int size = ordered.size();
+        if (size == 0) {
+            return pieces;
+        }
+
+        final long maxBytes = split.getMaxBytes() > 0 ? split.getMaxBytes() : Long.MAX_VALUE;
+        final int maxRecords = split.getMaxRecords() > 0 ? split.getMaxRecords() : Integer.MAX_VALUE;
+
+        final Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+        for (final NotfisLine line : ordered) {
+            counts.merge(line.getRegistration(), 1, Integer::sum);
+        }
+        final int first = ordered.get(0).getRegistration();
+
+        int headerEnd = 0;
+        while (headerEnd < size && !repeated(ordered.get(headerEnd), first, counts)) {
+            headerEnd++;
+        }
+        int trailerStart = size;
+        while (trailerStart > headerEnd && !repeated(ordered.get(trailerStart - 1), first, counts)) {
+            trailerStart--;
+        }
+
+        final long fixedBytes = NotfisRenderer.size(ordered, 0, headerEnd, terminator)
+                + NotfisRenderer.size(ordered, trailerStart, size, terminator);
+        final int fixedRecords = count(ordered, 0, headerEnd, counted) + count(ordered, trailerStart, size, counted);
+
+        if (headerEnd == size) {
+            // nada repetido: não há onde dividir
+            check(fixedBytes, maxBytes);
+            pieces.add(new Piece(ordered, fixedBytes, fixedRecords));
+            return pieces;
+        }
+
+        int partStart = headerEnd;
+        long partBytes = fixedBytes;
+        int partRecords = fixedRecords;
+        int roundStart = headerEnd;
+
+        for (int i = headerEnd + 1; i <= trailerStart; i++) {
+            // dentro de uma rodada os registros são crescentes; uma queda abre a próxima
+            if (i < trailerStart && ordered.get(i).getRegistration() > ordered.get(i - 1).getRegistration()) {
+                continue;
+            }
+
+            final long roundBytes = NotfisRenderer.size(ordered, roundStart, i, terminator);
+            final int roundRecords = count(ordered, roundStart, i, counted);
+            if (partStart < roundStart
+                    && (partBytes + roundBytes > maxBytes || partRecords + roundRecords > maxRecords)) {
+                pieces.add(piece(ordered, headerEnd, partStart, roundStart, trailerStart, partBytes, partRecords));
+                partStart = roundStart;
+                partBytes = fixedBytes;
+                partRecords = fixedRecords;
+            }
+
+            partBytes += roundBytes;
+            partRecords += roundRecords;
+            check(partBytes, maxBytes);
+            roundStart = i;
+        }
+
+        pieces.add(piece(ordered, headerEnd, partStart, trailerStart, trailerStart, partBytes, partRecords));
+
+        if (pieces.size() > 1) {
+            checkRepeatable(ordered, 0, headerEnd, counted, "cabeçalho");
+            for (int i = trailerStart; i < size; i++) {
+                final NotfisRecordLayout record = ordered.get(i).getLayout();
+                if (!trailers.contains(record)) {
+                    throw new NotfisException("Registro " + record.getIdentifier() + " aparece uma única vez "
+                            + "fora do cabeçalho e não pode ser atribuído a uma das partes; informe os rodapés "
+                            + "com NotfisSplit.withTrailer ou não divida o arquivo.");
+                }
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * O cabeçalho vai para todas as partes; a nota contada não pode estar nele.
+     */
+    private static void checkRepeatable(List<NotfisLine> lines, int from, int to, NotfisRecordLayout counted,
+            String section) throws NotfisException {
+        if (counted != null && count(lines, from, to, counted) > 0) {
+            throw new NotfisException("Registro " + counted.getIdentifier() + " está no " + section
+                    + " e seria repetido em todas as partes.");
+        }
+    }
+
+    private static boolean repeated(NotfisLine line, int first, Map<Integer, Integer> counts) {
+        return line.getRegistration() != first && counts.get(line.getRegistration()) > 1;
+    }
+
+    private static int count(List<NotfisLine> lines, int from, int to, NotfisRecordLayout counted) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (lines.get(i).getLayout() == counted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void check(long bytes, long maxBytes) throws NotfisException {
+        if (bytes > maxBytes) {
+            throw new NotfisException("Limite de " + maxBytes + " bytes menor que a menor parte possível ("
+                    + bytes + " bytes: cabeçalho, rodapé e uma nota).");
+        }
+    }
+
+    private static Piece piece(List<NotfisLine> ordered, int headerEnd, int from, int to, int trailerStart,
+            long bytes, int records) {
+        final List<NotfisLine> lines = new ArrayList<NotfisLine>(headerEnd + (to - from)
+                + (ordered.size() - trailerStart));
+        lines.addAll(ordered.subList(0, headerEnd));
+        lines.addAll(ordered.subList(from, to));
+        lines.addAll(ordered.subList(trailerStart, ordered.size()));
+        return new Piece(lines, bytes, records);
+    }
+
+    static final class Piece {
+        final List<NotfisLine> lines;
+        final long bytes;
+        final int records;
+
+        private Piece(List<NotfisLine> lines, long bytes, int records) {
+            this.lines = lines;
+            this.bytes = bytes;
+            this.records = records;
+        }
+    }
+}
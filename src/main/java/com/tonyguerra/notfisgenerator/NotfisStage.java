@@ -0,0 +1,8 @@
+package com.tonyguerra.notfisgenerator;
+
+/**
+ * Etapas de uma geração, reportadas ao {@link NotfisListener}.
+ */
+public enum NotfisStage {
+    LOAD_LAYOUT, VALIDATION, ORDERING, RENDERING
+}
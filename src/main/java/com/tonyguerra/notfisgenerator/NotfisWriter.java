@@ -1,261 +1,648 @@
 package com.tonyguerra.notfisgenerator;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tonyguerra.notfisgenerator.errors.NotfisException;
 
+/**
+ * Gerador de arquivos notfis. A instância não guarda estado entre chamadas:
+ * o layout é compartilhado somente leitura e todo o estado de geração é
+ * local a cada chamada, então um mesmo writer pode ser usado por várias
+ * threads ao mesmo tempo.
+ */
 public final class NotfisWriter {
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final String SPLIT_EXTERNAL_ORDERING = "A divisão em arquivos não suporta ordenação externa.";
 
     private final NotfisType type;
-    private Map<String, List<NotfisConfigField>> configMap;
-    private List<NotfisLine> lines;
+    private final NotfisWriterOptions options;
+    private volatile NotfisLayout layout;
 
     public NotfisWriter(NotfisType type) {
+        this(type, null, NotfisWriterOptions.defaults());
+    }
+
+    private NotfisWriter(NotfisType type, NotfisLayout layout, NotfisWriterOptions options) {
         this.type = type;
-        this.configMap = null;
-        this.lines = new ArrayList<NotfisLine>();
+        this.layout = layout;
+        this.options = options;
     }
 
-    private void loadConfigFile() throws NotfisException {
-        if (this.configMap != null) {
-            return; // cache
+    /**
+     * Cria um writer já vinculado a um layout compilado.
+     */
+    public static NotfisWriter forLayout(NotfisLayout layout) throws NotfisException {
+        if (layout == null) {
+            throw new NotfisException("Layout nulo.");
         }
+        return new NotfisWriter(null, layout, NotfisWriterOptions.defaults());
+    }
 
-        if (type == null) {
-            throw new NotfisException("Tipo de notfis não especificado.");
+    /**
+     * Devolve um novo writer, com o mesmo layout, usando as opções informadas.
+     */
+    public NotfisWriter withOptions(NotfisWriterOptions options) throws NotfisException {
+        if (options == null) {
+            throw new NotfisException("Opções nulas.");
         }
+        return new NotfisWriter(type, layout, options);
+    }
 
-        final String configFilename = "notfis/" + type.getConfigFilename();
-
-        try (java.io.InputStream is = getClass().getClassLoader().getResourceAsStream(configFilename)) {
-            if (is == null) {
-                throw new NotfisException("Arquivo de configuração não encontrado: " + configFilename);
-            }
-
-            final TypeReference<Map<String, List<Map<String, Object>>>> tr = new TypeReference<Map<String, List<Map<String, Object>>>>() {
-            };
-
-            final Map<String, List<Map<String, Object>>> raw = MAPPER.readValue(is, tr);
-
-            final Map<String, List<NotfisConfigField>> parsed = new HashMap<String, List<NotfisConfigField>>();
-
-            for (Map.Entry<String, List<Map<String, Object>>> entry : raw.entrySet()) {
-                final String identifier = entry.getKey();
-                final List<Map<String, Object>> fields = entry.getValue();
-
-                final List<NotfisConfigField> configFields = new ArrayList<NotfisConfigField>();
-
-                if (fields != null) {
-                    for (Map<String, Object> f : fields) {
-                        final String name = asString(f.get("name"));
-                        final String formatStr = asStringOrDefault(f.get("format"), "A");
-                        final NotfisFieldType format = "A".equalsIgnoreCase(formatStr)
-                                ? NotfisFieldType.ALPHANUMERIC
-                                : NotfisFieldType.NUMERIC;
-
-                        final short position = asShort(f.get("position"));
-                        final short size = asShort(f.get("size"));
-                        final boolean mandatory = asBoolean(f.get("mandatory"));
-
-                        configFields.add(new NotfisConfigField(name, format, position, size, mandatory));
-                    }
-                }
+    public NotfisWriterOptions getOptions() {
+        return options;
+    }
 
-                parsed.put(identifier, configFields);
-            }
+    private NotfisLayout loadConfigFile() throws NotfisException {
+        final NotfisLayout cached = this.layout;
+        if (cached != null) {
+            return cached;
+        }
 
-            this.configMap = parsed;
+        // NotfisLayouts sempre devolve a mesma instância, então a corrida aqui é inofensiva
+        final NotfisLayout loaded = NotfisLayouts.get(type);
+        this.layout = loaded;
+        return loaded;
+    }
 
-        } catch (IOException ex) {
-            throw new NotfisException("Erro ao carregar o arquivo de configuração: " + configFilename, ex);
-        }
+    static List<NotfisLine> checkAllFields(NotfisLayout layout, NotfisPayload payload) throws NotfisException {
+        final List<NotfisLine> populatedLines = new ArrayList<NotfisLine>();
+        checkAllFields(layout, payload, populatedLines::add);
+        return populatedLines;
     }
 
-    private void checkAllFields(NotfisPayload payload) throws NotfisException {
-        loadConfigFile();
+    private static void checkAllFields(NotfisLayout layout, NotfisPayload payload, NotfisLineConsumer consumer)
+            throws NotfisException {
 
         if (payload == null || payload.getRecords() == null) {
             throw new NotfisException("Payload nulo.");
         }
 
-        final List<NotfisLine> populatedLines = new ArrayList<NotfisLine>();
-
         for (Map.Entry<String, List<List<NotfisParam>>> entry : payload.getRecords().entrySet()) {
             final String identifier = entry.getKey();
             final List<List<NotfisParam>> payloadLines = entry.getValue();
 
-            final List<NotfisConfigField> configLines = configMap.get(identifier);
-            if (configLines == null) {
+            final NotfisRecordLayout record = layout.getRecord(identifier);
+            if (record == null) {
                 throw new NotfisException("Identificador de registro não encontrado na configuração: " + identifier);
             }
 
             if (payloadLines == null)
                 continue;
 
+            final int fieldCount = record.getFieldCount();
+
             for (int i = 0; i < payloadLines.size(); i++) {
                 final List<NotfisParam> params = payloadLines.get(i);
-                final List<NotfisField> populatedFields = new ArrayList<NotfisField>();
-
-                for (NotfisConfigField cfg : configLines) {
-                    final String name = cfg.getName();
-
-                    final NotfisParam match = findParamByName(params, name);
-
-                    if (match != null) {
-                        Object value = match.getValue();
-                        if (value == null) {
-                            throw new NotfisException("Valor nulo encontrado no campo '" + name
-                                    + "' no identificador " + identifier);
-                        }
-
-                        Object sanitized = sanitizeValue(value, cfg.getFormat());
-
-                        populatedFields.add(new NotfisField(
-                                name,
-                                cfg.getFormat(),
-                                cfg.getPosition(),
-                                cfg.getSize(),
-                                cfg.isMandatory(),
-                                sanitized));
-                    } else if (cfg.isMandatory()) {
-                        throw new NotfisException("Campo obrigatório '" + name
-                                + "' não encontrado no identificador " + identifier);
-                    }
-                }
+                final Object[] values = new Object[fieldCount];
+
+                bindParams(record, params, values);
 
-                populatedLines.add(new NotfisLine(identifier, populatedFields));
+                consumer.accept(new NotfisLine(record, values));
             }
         }
+    }
+
+    static List<NotfisLine> checkLines(List<NotfisLine> lines) throws NotfisException {
+        if (lines == null) {
+            throw new NotfisException("Linhas nulas.");
+        }
 
-        this.lines.clear();
-        this.lines.addAll(populatedLines);
+        for (final NotfisLine line : lines) {
+            if (line == null || line.getLayout() == null) {
+                throw new NotfisException("Linha sem layout; use NotfisWriter.record para montá-la.");
+            }
+        }
+
+        return lines;
     }
 
-    private static NotfisParam findParamByName(List<NotfisParam> params, String name) {
-        if (params == null || name == null)
-            return null;
-        for (NotfisParam p : params) {
-            if (p != null && name.equals(p.getName()))
-                return p;
+    private static void checkLines(List<NotfisLine> lines, NotfisLineConsumer consumer) throws NotfisException {
+        for (final NotfisLine line : checkLines(lines)) {
+            consumer.accept(line);
         }
-        return null;
     }
 
-    private static Object sanitizeValue(Object value, NotfisFieldType format) {
-        if (format == NotfisFieldType.NUMERIC && value instanceof Number) {
-            Number n = (Number) value;
-            return Math.round(n.doubleValue());
+    private static void bindParams(NotfisRecordLayout record, List<NotfisParam> params, Object[] values)
+            throws NotfisException {
+        if (params != null) {
+            for (NotfisParam p : params) {
+                if (p != null) {
+                    record.bind(values, p.getName(), p.getValue());
+                }
+            }
         }
 
-        final String s = value.toString();
-        return s.replaceAll("[^\\p{ASCII}]", "")
-                .replaceAll("[^a-zA-Z0-9\\s]", "");
+        record.checkMandatory(values);
     }
 
     public InputStream writeFileToStream(NotfisPayload payload) throws NotfisException {
-        checkAllFields(payload);
+        return generateToInputStream((layout, consumer) -> checkAllFields(layout, payload, consumer));
+    }
 
-        this.lines = NotfisLine.orderLines(this.lines);
+    /**
+     * Escreve as linhas diretamente no {@link OutputStream} informado, usando um
+     * buffer interno de tamanho fixo. O stream não é fechado.
+     */
+    public void writeFileToStream(NotfisPayload payload, OutputStream outputStream) throws NotfisException {
+        generateToStream((layout, consumer) -> checkAllFields(layout, payload, consumer), outputStream);
+    }
 
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            for (final NotfisLine line : this.lines) {
-                final List<NotfisField> fields = line.getField();
-                if (fields == null || fields.isEmpty()) {
-                    continue;
-                }
+    /**
+     * Cria um builder de linhas para o identificador informado, usando o layout
+     * deste writer.
+     */
+    public NotfisRecordBuilder record(String identifier) throws NotfisException {
+        final NotfisRecordLayout record = loadConfigFile().getRecord(identifier);
+        if (record == null) {
+            throw new NotfisException("Identificador de registro não encontrado na configuração: " + identifier);
+        }
+        return new NotfisRecordBuilder(record, options.getSanitizer());
+    }
+
+    /**
+     * Abre um documento escrito em streaming, na ordem hierárquica do layout
+     * deste writer. O stream não é fechado.
+     *
+     * @see NotfisDocument
+     */
+    public NotfisDocument openDocument(OutputStream outputStream) throws NotfisException {
+        final NotfisHierarchy hierarchy = NotfisHierarchy.forType(type);
+        if (hierarchy == null) {
+            throw new NotfisException(
+                    "Layout sem hierarquia conhecida; use openDocument(OutputStream, NotfisHierarchy).");
+        }
+        return openDocument(outputStream, hierarchy);
+    }
+
+    /**
+     * Como {@link #openDocument(OutputStream)}, com a hierarquia informada
+     * (para layouts próprios).
+     */
+    public NotfisDocument openDocument(OutputStream outputStream, NotfisHierarchy hierarchy) throws NotfisException {
+        if (outputStream == null) {
+            throw new NotfisException("OutputStream nulo.");
+        }
+        if (hierarchy == null) {
+            throw new NotfisException("Hierarquia nula.");
+        }
+        return new NotfisDocument(loadConfigFile(), hierarchy, options, outputStream);
+    }
+
+    /**
+     * Mapper de objetos anotados com {@link NotfisRecord}/{@link NotfisColumn}
+     * para o layout deste writer.
+     */
+    public NotfisMapper mapper() throws NotfisException {
+        return loadConfigFile().getMapper();
+    }
 
-                final int totalLength = maxLineLength(fields);
+    /**
+     * Gera o arquivo a partir de linhas montadas com {@link #record(String)}.
+     */
+    public InputStream writeFileToStream(List<NotfisLine> lines) throws NotfisException {
+        return generateToInputStream((layout, consumer) -> checkLines(lines, consumer));
+    }
 
-                final char[] lineChars = new char[totalLength];
-                java.util.Arrays.fill(lineChars, ' ');
+    /**
+     * Escreve no {@link OutputStream} as linhas montadas com
+     * {@link #record(String)}. O stream não é fechado.
+     */
+    public void writeFileToStream(List<NotfisLine> lines, OutputStream outputStream) throws NotfisException {
+        generateToStream((layout, consumer) -> checkLines(lines, consumer), outputStream);
+    }
+
+    /**
+     * Escreve o arquivo comprimido em gzip no {@link OutputStream} informado.
+     * Com renderização paralela, a compressão também é feita em paralelo, bloco
+     * a bloco. O stream não é fechado.
+     */
+    public void writeFileToGzipStream(NotfisPayload payload, OutputStream outputStream) throws NotfisException {
+        generateToGzipStream((layout, consumer) -> checkAllFields(layout, payload, consumer), outputStream);
+    }
 
-                for (NotfisField field : fields) {
-                    final String v = field.getValue() == null ? "" : field.getValue().toString();
+    /**
+     * Escreve em gzip as linhas montadas com {@link #record(String)}. O stream
+     * não é fechado.
+     */
+    public void writeFileToGzipStream(List<NotfisLine> lines, OutputStream outputStream) throws NotfisException {
+        generateToGzipStream((layout, consumer) -> checkLines(lines, consumer), outputStream);
+    }
 
-                    final int startPosition = field.getPosition() - 1;
-                    final int endPosition = Math.min(startPosition + field.getSize(), totalLength);
+    /**
+     * Gera o arquivo comprimido em gzip no caminho informado, criando ou
+     * sobrescrevendo-o.
+     */
+    public void writeGzipFile(NotfisPayload payload, Path path) throws NotfisException {
+        if (path == null) {
+            throw new NotfisException("Caminho do arquivo nulo.");
+        }
 
-                    for (int i = startPosition, j = 0; i < endPosition && j < v.length(); i++, j++) {
-                        lineChars[i] = v.charAt(j);
-                    }
+        try (OutputStream os = Files.newOutputStream(path)) {
+            writeFileToGzipStream(payload, os);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao gravar o arquivo: " + path, ex);
+        }
+    }
+
+    /**
+     * Abre uma sessão de gravação incremental sobre o arquivo, retomando do
+     * último checkpoint se houver um.
+     *
+     * @see NotfisSession
+     */
+    public NotfisSession openSession(Path path) throws NotfisException {
+        return openSession(path, NotfisSession.DEFAULT_CHECKPOINT_LINES);
+    }
+
+    /**
+     * Como {@link #openSession(Path)}, gravando um checkpoint a cada
+     * {@code checkpointLines} linhas.
+     */
+    public NotfisSession openSession(Path path, int checkpointLines) throws NotfisException {
+        return NotfisSession.open(loadConfigFile(), options, path, checkpointLines);
+    }
+
+    /**
+     * Escreve as linhas diretamente no canal informado. O canal não é fechado.
+     */
+    public void writeFileToChannel(NotfisPayload payload, WritableByteChannel channel) throws NotfisException {
+        if (channel == null) {
+            throw new NotfisException("Canal de saída nulo.");
+        }
+
+        writeFileToStream(payload, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Gera o arquivo no caminho informado, criando ou sobrescrevendo-o. O
+     * arquivo é pré-alocado com o tamanho final e cada bloco de linhas é
+     * gravado na sua posição.
+     */
+    public void writeFile(NotfisPayload payload, Path path) throws NotfisException {
+        generateToFile((layout, consumer) -> checkAllFields(layout, payload, consumer), path);
+    }
+
+    /**
+     * Divide o payload em vários arquivos em {@code directory}, respeitando os
+     * limites de {@code split}. Cada arquivo repete o cabeçalho (000 e
+     * 310/311 ou 500/501…) e o rodapé (318/519), e as notas nunca são
+     * separadas dos seus registros; outros registros únicos fora do cabeçalho
+     * fazem a divisão ser recusada. Com renderização paralela os arquivos são
+     * gravados ao mesmo tempo no executor. Não combina com ordenação externa.
+     *
+     * @see NotfisSplitter
+     */
+    public NotfisManifest writeFiles(NotfisPayload payload, Path directory, NotfisSplit split)
+            throws NotfisException {
+        if (directory == null) {
+            throw new NotfisException("Diretório nulo.");
+        }
+        if (split == null) {
+            throw new NotfisException("Divisão nula.");
+        }
+        if (options.isExternalOrdering()) {
+            throw new NotfisException(SPLIT_EXTERNAL_ORDERING);
+        }
+
+        final List<NotfisManifest.Part> parts = new ArrayList<NotfisManifest.Part>();
+        try {
+            Files.createDirectories(directory);
+            generate((layout, consumer) -> checkAllFields(layout, payload, consumer), (layout, lines, stats) -> {
+                final List<NotfisSplitter.Piece> pieces = NotfisSplitter.split(lines, split,
+                        countedRecord(layout, split), trailerRecords(layout, split), options.getLineTerminator());
+
+                final List<List<NotfisLine>> contents = new ArrayList<List<NotfisLine>>(pieces.size());
+                final List<Path> paths = new ArrayList<Path>(pieces.size());
+                for (final NotfisSplitter.Piece piece : pieces) {
+                    final Path path = directory.resolve(String.format(split.getFileName(), paths.size() + 1));
+                    contents.add(piece.lines);
+                    paths.add(path);
+                    parts.add(new NotfisManifest.Part(path, piece.bytes, piece.lines.size(), piece.records));
                 }
 
-                outputStream.write(new String(lineChars).getBytes(StandardCharsets.UTF_8));
-                outputStream.write('\n');
+                NotfisRenderer.renderFiles(contents, paths, options, stats);
+            }, sorter -> {
+                throw new NotfisException(SPLIT_EXTERNAL_ORDERING);
+            });
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao gravar os arquivos em: " + directory, ex);
+        }
+
+        return new NotfisManifest(parts);
+    }
+
+    private Set<NotfisRecordLayout> trailerRecords(NotfisLayout layout, NotfisSplit split) throws NotfisException {
+        List<String> identifiers = split.getTrailers();
+        if (identifiers == null) {
+            identifiers = type == null ? Collections.<String>emptyList()
+                    : Collections.singletonList(type == NotfisType.VERSION31 ? "318" : "519");
+        }
+
+        final Set<NotfisRecordLayout> trailers = new HashSet<NotfisRecordLayout>();
+        for (final String identifier : identifiers) {
+            final NotfisRecordLayout record = layout.getRecord(identifier);
+            if (record == null) {
+                throw new NotfisException("Identificador de registro não encontrado na configuração: " + identifier);
+            }
+            trailers.add(record);
+        }
+        return trailers;
+    }
+
+    private NotfisRecordLayout countedRecord(NotfisLayout layout, NotfisSplit split) throws NotfisException {
+        String identifier = split.getRecord();
+        if (identifier == null && type != null) {
+            identifier = type == NotfisType.VERSION31 ? "313" : "505";
+        }
+        if (identifier == null) {
+            if (split.getMaxRecords() > 0) {
+                throw new NotfisException("Informe o registro das notas com NotfisSplit.withRecord.");
             }
+            return null;
+        }
+
+        final NotfisRecordLayout record = layout.getRecord(identifier);
+        if (record == null) {
+            throw new NotfisException("Identificador de registro não encontrado na configuração: " + identifier);
+        }
+        return record;
+    }
 
-            return new ByteArrayInputStream(outputStream.toByteArray());
+    /**
+     * Tamanho exato, em bytes, do arquivo que seria gerado para o payload. O
+     * payload é validado, mas nada é renderizado.
+     */
+    public long computeSize(NotfisPayload payload) throws NotfisException {
+        return computeSize(checkAllFields(loadConfigFile(), payload), options.getLineTerminator());
+    }
+
+    /**
+     * Tamanho exato, em bytes, do arquivo que seria gerado para as linhas
+     * montadas com {@link #record(String)}.
+     */
+    public long computeSize(List<NotfisLine> lines) throws NotfisException {
+        return computeSize(checkLines(lines), options.getLineTerminator());
+    }
+
+    private static long computeSize(List<NotfisLine> lines, NotfisLineTerminator terminator) {
+        return NotfisRenderer.size(lines, 0, lines.size(), terminator);
+    }
 
-        } catch (Exception ex) {
+    private InputStream generateToInputStream(LineSource source) throws NotfisException {
+        try {
+            final byte[][] bytes = new byte[1][];
+            generate(source, (layout, lines, stats) -> {
+                bytes[0] = new byte[checkArraySize(computeSize(lines, options.getLineTerminator()))];
+                NotfisRenderer.render(lines, bytes[0], options, stats);
+            }, sorter -> {
+                final var outputStream = new ByteArrayOutputStream(checkArraySize(sorter.size()));
+                sorter.writeTo(outputStream);
+                bytes[0] = outputStream.toByteArray();
+            });
+
+            return new ByteArrayInputStream(bytes[0]);
+
+        } catch (IOException ex) {
             throw new NotfisException("Erro ao gerar o InputStream.", ex);
         }
     }
 
-    public void setConfigMapForTests(Map<String, List<NotfisConfigField>> cfg) {
-        this.configMap = cfg;
+    private static int checkArraySize(long size) throws NotfisException {
+        if (size > MAX_ARRAY_SIZE) {
+            throw new NotfisException("Arquivo grande demais para memória (" + size
+                    + " bytes); use writeFile ou writeFileToStream com OutputStream.");
+        }
+        return (int) size;
     }
 
-    private static int maxLineLength(List<NotfisField> fields) {
-        int max = 0;
-        for (final var f : fields) {
-            final int len = (f.getPosition() - 1) + f.getSize();
-            if (len > max)
-                max = len;
+    private void generateToFile(LineSource source, Path path) throws NotfisException {
+        if (path == null) {
+            throw new NotfisException("Caminho do arquivo nulo.");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            generate(source, (layout, lines, stats) -> NotfisRenderer.render(lines, channel, 0L, options, stats),
+                    sorter -> {
+                        final var buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                        sorter.writeTo(buffered);
+                        buffered.flush();
+                    });
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao gravar o arquivo: " + path, ex);
         }
-        return max;
     }
 
-    public InputStream writeFileToStream(String json) throws NotfisException {
+    private void generateToStream(LineSource source, OutputStream outputStream) throws NotfisException {
+        if (outputStream == null) {
+            throw new NotfisException("OutputStream nulo.");
+        }
+
+        try {
+            final var buffered = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+            generate(source, (layout, lines, stats) -> NotfisRenderer.render(layout, lines, buffered, options,
+                    stats), sorter -> sorter.writeTo(buffered));
+            buffered.flush();
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao escrever no OutputStream.", ex);
+        }
+    }
+
+    private void generateToGzipStream(LineSource source, OutputStream outputStream) throws NotfisException {
+        if (outputStream == null) {
+            throw new NotfisException("OutputStream nulo.");
+        }
+
+        try {
+            final var buffered = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+            generate(source, (layout, lines, stats) -> NotfisRenderer.renderGzip(layout, lines, buffered, options,
+                    stats), sorter -> {
+                        final var gzip = new GZIPOutputStream(buffered, BUFFER_SIZE);
+                        sorter.writeTo(gzip);
+                        gzip.finish();
+                    });
+            buffered.flush();
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao escrever no OutputStream.", ex);
+        }
+    }
+
+    /**
+     * Fluxo comum a todas as saídas: layout, validação, ordenação e
+     * renderização, medindo cada etapa quando há um listener configurado.
+     */
+    private void generate(LineSource source, LineSink sink, SpillSink spillSink)
+            throws NotfisException, IOException {
+        final NotfisListener listener = options.getListener();
+        final boolean measure = listener != NotfisListener.NOOP;
+        final NotfisRenderStats stats = measure ? new NotfisRenderStats() : null;
+
+        long start = measure ? System.nanoTime() : 0L;
+        final NotfisLayout layout = loadConfigFile();
+        start = stage(listener, measure, NotfisStage.LOAD_LAYOUT, start);
+
+        if (options.isExternalOrdering()) {
+            // as linhas são renderizadas durante a validação e ordenadas durante a escrita
+            try (NotfisSpillSorter sorter = new NotfisSpillSorter(options, stats)) {
+                bind(source, layout, line -> spill(sorter, line), listener);
+                start = stage(listener, measure, NotfisStage.VALIDATION, start);
+
+                spillSink.write(sorter);
+                stage(listener, measure, NotfisStage.RENDERING, start);
+            }
+        } else {
+            final List<NotfisLine> lines = new ArrayList<NotfisLine>();
+            bind(source, layout, lines::add, listener);
+            start = stage(listener, measure, NotfisStage.VALIDATION, start);
+
+            final List<NotfisLine> ordered = NotfisLine.orderLines(lines);
+            start = stage(listener, measure, NotfisStage.ORDERING, start);
+
+            sink.render(layout, ordered, stats);
+            stage(listener, measure, NotfisStage.RENDERING, start);
+        }
+
+        if (stats != null) {
+            stats.report(listener);
+        }
+    }
+
+    private static void bind(LineSource source, NotfisLayout layout, NotfisLineConsumer consumer,
+            NotfisListener listener) throws NotfisException {
+        try {
+            source.bind(layout, consumer);
+        } catch (NotfisException ex) {
+            listener.onValidationFailure(ex);
+            throw ex;
+        }
+    }
+
+    private static void spill(NotfisSpillSorter sorter, NotfisLine line) throws NotfisException {
         try {
-            final var tr = new TypeReference<Map<String, List<List<NotfisParam>>>>() {
-            };
-            final var records = MAPPER.readValue(json, tr);
-            return writeFileToStream(new NotfisPayload(records));
-        } catch (Exception ex) {
-            throw new NotfisException("JSON inválido: " + ex.getMessage(), ex);
+            sorter.add(line);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao gravar arquivo temporário da ordenação externa.", ex);
         }
     }
 
-    // ---------- helpers de conversão ----------
-    private static String asString(Object v) throws NotfisException {
-        if (v == null) {
-            throw new NotfisException("Campo 'name' ausente na configuração.");
+    private static long stage(NotfisListener listener, boolean measure, NotfisStage stage, long start) {
+        if (!measure) {
+            return 0L;
         }
-        return v.toString();
+        final long now = System.nanoTime();
+        listener.onStage(stage, now - start);
+        return now;
     }
 
-    private static String asStringOrDefault(Object v, String def) {
-        return v == null ? def : v.toString();
+    public void setConfigMapForTests(Map<String, List<NotfisConfigField>> cfg) throws NotfisException {
+        this.layout = NotfisLayout.compile(cfg);
     }
 
-    private static short asShort(Object v) throws NotfisException {
-        if (v == null) {
-            throw new NotfisException("Campo numérico ausente na configuração.");
+    public InputStream writeFileToStream(String json) throws NotfisException {
+        if (json == null) {
+            throw new NotfisException("JSON nulo.");
         }
 
-        if (v instanceof Number) {
-            return (short) ((Number) v).intValue();
+        return generateToInputStream(
+                (layout, consumer) -> readJson(() -> NotfisJsonPayloadReader.read(layout, json, consumer)));
+    }
+
+    /**
+     * Lê o payload JSON em streaming e escreve as linhas no {@link OutputStream}
+     * informado. Nenhum dos streams é fechado.
+     */
+    public void writeFileToStream(InputStream json, OutputStream outputStream) throws NotfisException {
+        if (json == null) {
+            throw new NotfisException("InputStream do JSON nulo.");
         }
 
-        return Short.parseShort(v.toString());
+        generateToStream((layout, consumer) -> readJson(() -> NotfisJsonPayloadReader.read(layout, json, consumer)),
+                outputStream);
+    }
+
+    /**
+     * Lê o payload JSON em streaming e escreve as linhas no {@link OutputStream}
+     * informado. Nenhum dos streams é fechado.
+     */
+    public void writeFileToStream(Reader json, OutputStream outputStream) throws NotfisException {
+        if (json == null) {
+            throw new NotfisException("Reader do JSON nulo.");
+        }
+
+        generateToStream((layout, consumer) -> readJson(() -> NotfisJsonPayloadReader.read(layout, json, consumer)),
+                outputStream);
+    }
+
+    /**
+     * Converte o payload JSON do arquivo {@code json} no arquivo notfis
+     * {@code path}, criando ou sobrescrevendo-o.
+     */
+    public void writeFile(Path json, Path path) throws NotfisException {
+        if (json == null) {
+            throw new NotfisException("Caminho do arquivo nulo.");
+        }
+
+        try (InputStream is = Files.newInputStream(json)) {
+            generateToFile((layout, consumer) -> readJson(() -> NotfisJsonPayloadReader.read(layout, is, consumer)),
+                    path);
+        } catch (IOException ex) {
+            throw new NotfisException("Erro ao ler o arquivo: " + json, ex);
+        }
+    }
+
+    /**
+     * Sem o jackson-core no classpath, a entrada JSON falha com uma mensagem
+     * clara em vez de {@link NoClassDefFoundError}.
+     */
+    private static void readJson(JsonInput input) throws NotfisException {
+        try {
+            input.read();
+        } catch (NoClassDefFoundError ex) {
+            throw new NotfisException(NotfisJsonPayloadReader.JACKSON_MISSING, ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface LineSource {
+        void bind(NotfisLayout layout, NotfisLineConsumer consumer) throws NotfisException;
+    }
+
+    @FunctionalInterface
+    private interface LineSink {
+        void render(NotfisLayout layout, List<NotfisLine> lines, NotfisRenderStats stats)
+                throws NotfisException, IOException;
+    }
+
+    /**
+     * Saída usada com {@link NotfisWriterOptions#withExternalOrdering(long)}.
+     */
+    @FunctionalInterface
+    private interface SpillSink {
+        void write(NotfisSpillSorter sorter) throws NotfisException, IOException;
     }
 
-    private static boolean asBoolean(Object v) {
-        if (v == null)
-            return false;
-        if (v instanceof Boolean)
-            return ((Boolean) v).booleanValue();
-        return Boolean.parseBoolean(v.toString());
+    @FunctionalInterface
+    private interface JsonInput {
+        void read() throws NotfisException;
     }
 }
@@ -0,0 +1,178 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Opções de geração do {@link NotfisWriter}. Imutável: cada {@code with...}
+ * devolve uma nova instância.
+ */
+public final class NotfisWriterOptions {
+    public static final int DEFAULT_CHUNK_LINES = 8192;
+
+    private static final NotfisWriterOptions DEFAULTS = new NotfisWriterOptions(null, DEFAULT_CHUNK_LINES,
+            NotfisListener.NOOP, StandardCharsets.US_ASCII, NotfisLineTerminator.LF, 0L, null, null);
+
+    private final Executor executor;
+    private final int chunkLines;
+    private final NotfisListener listener;
+    private final Charset charset;
+    private final NotfisLineTerminator lineTerminator;
+    private final NotfisSanitizer sanitizer;
+    private final long spillMemoryBudget;
+    private final Path spillDirectory;
+    private final NotfisRenderCache renderCache;
+
+    private NotfisWriterOptions(Executor executor, int chunkLines, NotfisListener listener, Charset charset,
+            NotfisLineTerminator lineTerminator, long spillMemoryBudget, Path spillDirectory,
+            NotfisRenderCache renderCache) {
+        this.executor = executor;
+        this.chunkLines = chunkLines;
+        this.listener = listener;
+        this.charset = charset;
+        this.lineTerminator = lineTerminator;
+        this.sanitizer = NotfisSanitizer.forCharset(charset);
+        this.spillMemoryBudget = spillMemoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.renderCache = renderCache;
+    }
+
+    public static NotfisWriterOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Renderiza as linhas em paralelo no {@link ForkJoinPool#commonPool()}, em
+     * blocos de {@link #DEFAULT_CHUNK_LINES} linhas.
+     */
+    public NotfisWriterOptions withParallelRendering() {
+        return withParallelRendering(ForkJoinPool.commonPool(), DEFAULT_CHUNK_LINES);
+    }
+
+    /**
+     * Renderiza as linhas em paralelo no executor informado, em blocos de
+     * {@code chunkLines} linhas. A saída é idêntica à renderização sequencial.
+     * Um executor nulo desativa o modo paralelo.
+     */
+    public NotfisWriterOptions withParallelRendering(Executor executor, int chunkLines) {
+        if (chunkLines <= 0) {
+            throw new IllegalArgumentException("chunkLines deve ser maior que zero.");
+        }
+        return new NotfisWriterOptions(executor, chunkLines, listener, charset, lineTerminator, spillMemoryBudget,
+                spillDirectory, renderCache);
+    }
+
+    /**
+     * Reporta duração por etapa e contadores de cada geração ao listener
+     * informado. Nulo volta ao {@link NotfisListener#NOOP}.
+     */
+    public NotfisWriterOptions withListener(NotfisListener listener) {
+        return new NotfisWriterOptions(executor, chunkLines, listener == null ? NotfisListener.NOOP : listener,
+                charset, lineTerminator, spillMemoryBudget, spillDirectory, renderCache);
+    }
+
+    /**
+     * Charset do arquivo: US-ASCII (padrão), ISO-8859-1 ou UTF-8. Os bytes são
+     * escritos direto no buffer, sem {@link String} intermediária. Com
+     * ISO-8859-1 as letras acentuadas são preservadas; nos demais são
+     * convertidas para a letra base, mantendo um byte por caractere.
+     *
+     * @throws IllegalArgumentException para outros charsets
+     */
+    public NotfisWriterOptions withCharset(Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("Charset nulo.");
+        }
+        return new NotfisWriterOptions(executor, chunkLines, listener, charset, lineTerminator, spillMemoryBudget,
+                spillDirectory, renderCache);
+    }
+
+    public NotfisWriterOptions withLineTerminator(NotfisLineTerminator lineTerminator) {
+        if (lineTerminator == null) {
+            throw new IllegalArgumentException("Terminador de linha nulo.");
+        }
+        return new NotfisWriterOptions(executor, chunkLines, listener, charset, lineTerminator, spillMemoryBudget,
+                spillDirectory, renderCache);
+    }
+
+    /**
+     * Ordena as linhas fora do heap: cada linha é renderizada ao ser validada
+     * e guardada por registro; quando o que está em memória passa de
+     * {@code memoryBudget} bytes, vai para arquivos temporários no diretório
+     * padrão. Indicado para arquivos maiores que o heap; a renderização passa
+     * a ser sequencial.
+     */
+    public NotfisWriterOptions withExternalOrdering(long memoryBudget) {
+        return withExternalOrdering(memoryBudget, null);
+    }
+
+    /**
+     * Como {@link #withExternalOrdering(long)}, com os arquivos temporários em
+     * {@code directory} (nulo usa o diretório temporário padrão).
+     */
+    public NotfisWriterOptions withExternalOrdering(long memoryBudget, Path directory) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget deve ser maior que zero.");
+        }
+        return new NotfisWriterOptions(executor, chunkLines, listener, charset, lineTerminator, memoryBudget,
+                directory, renderCache);
+    }
+
+    /**
+     * Reaproveita linhas já renderizadas com os mesmos valores (ex: 311 e
+     * 312/501/502 repetidos em todas as notas). Nulo desativa.
+     *
+     * @see NotfisRenderCache
+     */
+    public NotfisWriterOptions withRenderCache(NotfisRenderCache renderCache) {
+        return new NotfisWriterOptions(executor, chunkLines, listener, charset, lineTerminator, spillMemoryBudget,
+                spillDirectory, renderCache);
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public int getChunkLines() {
+        return chunkLines;
+    }
+
+    public NotfisListener getListener() {
+        return listener;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public NotfisLineTerminator getLineTerminator() {
+        return lineTerminator;
+    }
+
+    NotfisSanitizer getSanitizer() {
+        return sanitizer;
+    }
+
+    public boolean isExternalOrdering() {
+        return spillMemoryBudget > 0;
+    }
+
+    public long getSpillMemoryBudget() {
+        return spillMemoryBudget;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public NotfisRenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    public boolean isParallel() {
+        return executor != null;
+    }
+}
@@ -1,5 +1,6 @@
 module com.tonyguerra122.notfisgenerator {
-    requires com.fasterxml.jackson.databind;
+    // opcional: só a entrada JSON precisa do Jackson
+    requires static com.fasterxml.jackson.core;
 
     exports com.tonyguerra.notfisgenerator;
     exports com.tonyguerra.notfisgenerator.errors;
@@ -0,0 +1,150 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisDocumentTest {
+
+    @Test
+    void add_shouldWriteLinesInHierarchicalOrderAsTheyArrive() throws Exception {
+        final var writer = NotfisWriter.forLayout(
+                NotfisLayout.compile(NotfisTestData.idValueLayout(1, "000", "310", "313", "314")));
+        final var out = new ByteArrayOutputStream();
+
+        try (NotfisDocument doc = writer.openDocument(out, hierarchy())) {
+            doc.add(line(doc, "000", "H"));
+            doc.add(line(doc, "310", "A"));
+            doc.add(line(doc, "313", "1"));
+            doc.add(line(doc, "314", "x"));
+            doc.add(line(doc, "313", "2"));
+            doc.flush();
+            assertEquals("000H\n310A\n3131\n314x\n3132\n", out.toString(StandardCharsets.US_ASCII));
+
+            doc.add(line(doc, "310", "B"));
+            doc.add(line(doc, "313", "3"));
+            assertEquals(7, doc.getLineCount());
+        }
+
+        assertEquals("000H\n310A\n3131\n314x\n3132\n310B\n3133\n", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void add_shouldRejectLinesOutsideTheirParent() throws Exception {
+        final var writer = NotfisWriter.forLayout(
+                NotfisLayout.compile(NotfisTestData.idValueLayout(1, "000", "310", "313", "314")));
+        final var out = new ByteArrayOutputStream();
+
+        try (NotfisDocument doc = writer.openDocument(out, hierarchy())) {
+            assertThrows(NotfisException.class, () -> doc.add(line(doc, "310", "A")));
+
+            doc.add(line(doc, "000", "H"));
+            assertThrows(NotfisException.class, () -> doc.add(line(doc, "313", "1")));
+            assertThrows(NotfisException.class, () -> doc.add(line(doc, "000", "H")));
+
+            // o erro não muda o contexto: o 310 continua aceito
+            doc.add(line(doc, "310", "A"));
+            doc.add(line(doc, "313", "1"));
+            assertEquals(3, doc.getLineCount());
+        }
+
+        assertEquals("000H\n310A\n3131\n", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void openDocument_shouldRequireHierarchyForCustomLayouts() throws Exception {
+        final var writer = NotfisWriter.forLayout(
+                NotfisLayout.compile(NotfisTestData.idValueLayout(1, "000", "310", "313", "314")));
+        assertThrows(NotfisException.class, () -> writer.openDocument(new ByteArrayOutputStream()));
+
+        final var parents = new HashMap<String, String>();
+        parents.put("000", "310");
+        assertThrows(NotfisException.class, () -> NotfisHierarchy.of("000", parents));
+
+        assertEquals("312", NotfisHierarchy.VERSION31.getParent("313"));
+        assertEquals("505", NotfisHierarchy.VERSION50.getParent("506"));
+        assertNull(NotfisHierarchy.VERSION50.getParent("000"));
+    }
+
+    @Test
+    void add_shouldFollowBundledHierarchies() throws Exception {
+        assertBundled(NotfisType.VERSION31, NotfisHierarchy.VERSION31,
+                Arrays.asList("000", "310", "311", "312", "313", "333", "314", "315", "316", "317", "313", "314",
+                        "312", "313", "318", "310", "311", "312", "313", "318"),
+                Arrays.asList("000", "310", "311", "313"));
+        assertBundled(NotfisType.VERSION50, NotfisHierarchy.VERSION50,
+                Arrays.asList("000", "500", "501", "502", "503", "504", "505", "506", "507", "508", "509", "511",
+                        "513", "514", "515", "505", "506", "503", "505", "519"),
+                Arrays.asList("000", "500", "501", "505"));
+    }
+
+    // ---------------- helpers ----------------
+
+    /**
+     * Escreve {@code valid} com o layout real da versão e confirma que a última
+     * linha de {@code invalid} é recusada.
+     */
+    private static void assertBundled(NotfisType type, NotfisHierarchy hierarchy, List<String> valid,
+            List<String> invalid) throws Exception {
+        final var writer = new NotfisWriter(type);
+        final var out = new ByteArrayOutputStream();
+
+        try (NotfisDocument doc = writer.openDocument(out)) {
+            for (final String identifier : valid) {
+                doc.add(fullLine(doc, identifier));
+            }
+            assertEquals(valid.size(), doc.getLineCount());
+        }
+
+        final String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(valid.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue(lines[i].startsWith(valid.get(i)), lines[i]);
+        }
+
+        try (NotfisDocument doc = writer.openDocument(new ByteArrayOutputStream(), hierarchy)) {
+            for (final String identifier : invalid.subList(0, invalid.size() - 1)) {
+                doc.add(fullLine(doc, identifier));
+            }
+            assertThrows(NotfisException.class, () -> doc.add(fullLine(doc, invalid.get(invalid.size() - 1))));
+        }
+    }
+
+    /**
+     * Linha com todos os campos preenchidos; o primeiro recebe o identificador.
+     */
+    private static NotfisLine fullLine(NotfisDocument doc, String identifier) throws NotfisException {
+        final var builder = doc.record(identifier);
+        final var record = builder.getLayout();
+        builder.set(0, identifier);
+        for (int f = 1; f < record.getFieldCount(); f++) {
+            if (record.getFieldFormat(f) == NotfisFieldType.NUMERIC) {
+                builder.set(f, f);
+            } else {
+                builder.set(f, "V" + f);
+            }
+        }
+        return builder.build();
+    }
+
+    private static NotfisLine line(NotfisDocument doc, String identifier, String value) throws NotfisException {
+        return doc.record(identifier)
+                .set("id", Integer.parseInt(identifier))
+                .set("value", value)
+                .build();
+    }
+
+    private static NotfisHierarchy hierarchy() throws NotfisException {
+        final var parents = new HashMap<String, String>();
+        parents.put("310", "000");
+        parents.put("313", "310");
+        parents.put("314", "313");
+        return NotfisHierarchy.of("000", parents);
+    }
+}
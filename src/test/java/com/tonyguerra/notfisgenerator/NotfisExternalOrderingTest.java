@@ -0,0 +1,58 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class NotfisExternalOrderingTest {
+
+    @Test
+    void externalOrdering_shouldMatchInMemoryOutput(@TempDir Path dir) throws Exception {
+        final Path spillDir = Files.createDirectory(dir.resolve("spill"));
+
+        for (final NotfisType type : NotfisType.values()) {
+            final var inMemory = new NotfisWriter(type);
+            final var layout = NotfisLayouts.get(type);
+
+            for (final long budget : new long[] { 1L, 4096L, Long.MAX_VALUE }) {
+                final var external = inMemory.withOptions(NotfisWriterOptions.defaults()
+                        .withExternalOrdering(budget, spillDir));
+
+                for (int seed = 0; seed < 3; seed++) {
+                    final var payload = NotfisTestData.fullPayload(layout, seed);
+                    final byte[] expected = inMemory.writeFileToStream(payload).readAllBytes();
+
+                    assertArrayEquals(expected, external.writeFileToStream(payload).readAllBytes());
+
+                    final var out = new ByteArrayOutputStream();
+                    external.writeFileToGzipStream(payload, out);
+                    try (var in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                        assertArrayEquals(expected, in.readAllBytes());
+                    }
+
+                    final Path file = dir.resolve("notfis.txt");
+                    external.writeFile(payload, file);
+                    assertArrayEquals(expected, Files.readAllBytes(file));
+                }
+            }
+        }
+
+        // arquivos temporários removidos ao final de cada geração
+        try (var files = Files.list(spillDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void withExternalOrdering_shouldRejectNonPositiveBudget() {
+        assertThrows(IllegalArgumentException.class,
+                () -> NotfisWriterOptions.defaults().withExternalOrdering(0));
+    }
+}
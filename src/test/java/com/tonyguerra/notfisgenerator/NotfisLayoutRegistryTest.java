@@ -0,0 +1,104 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisLayoutRegistryTest {
+
+    @Test
+    void register_shouldCompileIdenticalContentOnce() throws Exception {
+        final var registry = new NotfisLayoutRegistry();
+
+        final NotfisLayout a = registry.register("a", stream(layoutJson(5)));
+        final NotfisLayout b = registry.register("b", stream(layoutJson(5)));
+        final NotfisLayout c = registry.register("c", stream(layoutJson(6)));
+
+        assertSame(a, b);
+        assertNotSame(a, c);
+        assertSame(a, registry.get("a"));
+        assertEquals(Set.of("a", "b", "c"), registry.getNames());
+        assertEquals("000ABC  \n", render(registry.writer("a")));
+
+        assertThrows(NotfisException.class, () -> registry.get("unknown"));
+        assertThrows(NotfisException.class, () -> registry.register("d", stream("{ invalid")));
+    }
+
+    @Test
+    void watch_shouldSwapLayoutsWithoutAffectingExistingWriters(@TempDir Path dir) throws Exception {
+        write(dir, "carrier.json", layoutJson(5));
+
+        final List<NotfisException> failures = new CopyOnWriteArrayList<>();
+        try (var registry = new NotfisLayoutRegistry()) {
+            registry.watch(dir, failures::add);
+
+            final NotfisLayout initial = registry.get("carrier");
+            final NotfisWriter before = registry.writer("carrier");
+
+            write(dir, "carrier.json", layoutJson(7));
+            final NotfisLayout reloaded = await(registry, "carrier", initial);
+
+            assertEquals(10, reloaded.getMaxWidth());
+            assertEquals("000ABC  \n", render(before));
+            assertEquals("000ABC    \n", render(registry.writer("carrier")));
+
+            // arquivo inválido mantém o layout anterior
+            write(dir, "carrier.json", "{ invalid");
+            final long deadline = System.nanoTime() + 10_000_000_000L;
+            while (failures.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(failures.isEmpty());
+            assertSame(reloaded, registry.get("carrier"));
+        }
+    }
+
+    // ---------------- helpers ----------------
+
+    private static NotfisLayout await(NotfisLayoutRegistry registry, String name, NotfisLayout previous)
+            throws Exception {
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            final NotfisLayout current = registry.get(name);
+            if (current != previous) {
+                return current;
+            }
+            Thread.sleep(20);
+        }
+        return fail("layout não recarregado");
+    }
+
+    private static String render(NotfisWriter writer) throws Exception {
+        final var lines = List.of(writer.record("000").set("id", 0).set("value", "ABC").build());
+        return new String(writer.writeFileToStream(lines).readAllBytes(), StandardCharsets.US_ASCII);
+    }
+
+    private static void write(Path dir, String name, String content) throws Exception {
+        // grava ao lado e move, para o watcher nunca ler um arquivo pela metade
+        final Path tmp = Files.writeString(dir.resolve(name + ".tmp"), content);
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String layoutJson(int valueSize) {
+        return "{ \"000\": [ ["
+                + "{ \"name\": \"id\", \"format\": \"N\", \"size\": 3, \"position\": 1, \"mandatory\": true },"
+                + "{ \"name\": \"value\", \"format\": \"A\", \"size\": " + valueSize
+                + ", \"position\": 4, \"mandatory\": true }"
+                + "] ] }";
+    }
+}
@@ -0,0 +1,86 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisLayoutsTest {
+
+    @Test
+    void get_shouldLoadBundledLayouts() throws Exception {
+        final var v31 = NotfisLayouts.get(NotfisType.VERSION31);
+        final var v50 = NotfisLayouts.get(NotfisType.VERSION50);
+
+        assertNotNull(v31.getRecord("313"));
+        assertNotNull(v50.getRecord("505"));
+        assertEquals(320, v50.getRecord("505").getWidth());
+        assertEquals("IDENTIFICADOR DE REGISTRO", v31.getRecord("000").getFieldName(0));
+    }
+
+    @Test
+    void get_shouldShareSameInstanceAcrossCalls() throws Exception {
+        NotfisLayouts.warmUp();
+
+        assertSame(NotfisLayouts.get(NotfisType.VERSION31), NotfisLayouts.get(NotfisType.VERSION31));
+        assertSame(NotfisLayouts.get(NotfisType.VERSION50), NotfisLayouts.get(NotfisType.VERSION50));
+    }
+
+    @Test
+    void generatedLayouts_shouldMatchJsonConfiguration() throws Exception {
+        for (final NotfisType type : NotfisType.values()) {
+            final var generated = NotfisLayoutLoader.load(type);
+            final var json = NotfisLayoutLoader.loadJson(type);
+
+            assertEquals(json.getIdentifiers(), generated.getIdentifiers());
+            for (final String identifier : json.getIdentifiers()) {
+                final var expected = json.getRecord(identifier);
+                final var actual = generated.getRecord(identifier);
+
+                assertEquals(expected.getFieldCount(), actual.getFieldCount(), identifier);
+                for (int f = 0; f < expected.getFieldCount(); f++) {
+                    assertEquals(expected.getFieldName(f), actual.getFieldName(f));
+                    assertEquals(expected.getFieldFormat(f), actual.getFieldFormat(f));
+                    assertEquals(expected.getFieldOffset(f), actual.getFieldOffset(f));
+                    assertEquals(expected.getFieldSize(f), actual.getFieldSize(f));
+                    assertEquals(expected.isFieldMandatory(f), actual.isFieldMandatory(f));
+                    assertEquals(expected.getFieldDecimals(f), actual.getFieldDecimals(f));
+                }
+            }
+        }
+    }
+
+    @Test
+    void layoutsAndWriter_shouldWorkWithoutJackson() throws Exception {
+        // só as classes da biblioteca, sem o jackson-core no classpath
+        final URL classes = NotfisWriter.class.getProtectionDomain().getCodeSource().getLocation();
+        try (var loader = new URLClassLoader(new URL[] { classes }, ClassLoader.getPlatformClassLoader())) {
+            assertThrows(ClassNotFoundException.class,
+                    () -> loader.loadClass("com.fasterxml.jackson.core.JsonFactory"));
+
+            final Class<?> typeClass = loader.loadClass(NotfisType.class.getName());
+            final Object v31 = typeClass.getField("VERSION31").get(null);
+
+            final Object writer = loader.loadClass(NotfisWriter.class.getName())
+                    .getConstructor(typeClass).newInstance(v31);
+            final Method record = writer.getClass().getMethod("record", String.class);
+            final Object builder = record.invoke(writer, "000");
+            assertNotNull(builder);
+
+            final Method fromJson = writer.getClass().getMethod("writeFileToStream", String.class);
+            final var ex = assertThrows(InvocationTargetException.class, () -> fromJson.invoke(writer, "{}"));
+            assertEquals(NotfisException.class.getName(), ex.getCause().getClass().getName());
+        }
+    }
+
+    @Test
+    void get_shouldThrowWhenTypeIsNull() {
+        assertThrows(NotfisException.class, () -> NotfisLayouts.get(null));
+    }
+}
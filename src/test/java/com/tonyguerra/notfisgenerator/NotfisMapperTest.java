@@ -0,0 +1,133 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisMapperTest {
+
+    @Test
+    void toLines_shouldMapFieldsGettersAndInheritedMembers() throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.shipperLayout()));
+        final var mapper = writer.mapper();
+        assertSame(mapper, writer.mapper());
+
+        final List<NotfisLine> lines = mapper.toLines(Arrays.asList(
+                new Item("João", 12, new BigDecimal("1.5")),
+                new Header("ABC")));
+
+        final String out = new String(writer.writeFileToStream(lines).readAllBytes(), StandardCharsets.US_ASCII);
+        assertEquals("000ABC  \n" + "311Joao      0120150\n", out);
+    }
+
+    @Test
+    void toLine_shouldReportMappingErrors() throws Exception {
+        final var mapper = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.shipperLayout())).mapper();
+
+        assertThrows(NotfisException.class, () -> mapper.toLine(new Object()));
+        assertThrows(NotfisException.class, () -> mapper.toLine(new UnknownColumn()));
+
+        final var ex = assertThrows(NotfisException.class, () -> mapper.toLine(new Item(null, 1, null)));
+        assertTrue(ex.getMessage().contains("name"));
+    }
+
+    @Test
+    void toLine_shouldUseMostDerivedOverride() throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.shipperLayout()));
+
+        final var line = writer.mapper().toLine(new Override311());
+        final String out = new String(writer.writeFileToStream(Arrays.asList(line)).readAllBytes(),
+                StandardCharsets.US_ASCII);
+        assertEquals("311Maria     007    \n", out);
+    }
+
+    // ---------------- helpers ----------------
+
+    abstract static class Identified {
+        @NotfisColumn("id")
+        private final int id;
+
+        Identified(int id) {
+            this.id = id;
+        }
+    }
+
+    @NotfisRecord("311")
+    static final class Item extends Identified {
+        @NotfisColumn("name")
+        private final String name;
+        private final int qty;
+        @NotfisColumn("weight")
+        private final BigDecimal weight;
+
+        Item(String name, int qty, BigDecimal weight) {
+            super(311);
+            this.name = name;
+            this.qty = qty;
+            this.weight = weight;
+        }
+
+        @NotfisColumn("qty")
+        int getQty() {
+            return qty;
+        }
+    }
+
+    abstract static class Named<T> {
+        @NotfisColumn("id")
+        int getId() {
+            return 999;
+        }
+
+        @NotfisColumn("name")
+        abstract T getName();
+    }
+
+    /**
+     * Sobrescreve getters anotados; {@code getName} gera uma ponte com a
+     * anotação copiada.
+     */
+    @NotfisRecord("311")
+    static final class Override311 extends Named<String> {
+        @Override
+        @NotfisColumn("id")
+        int getId() {
+            return 311;
+        }
+
+        @Override
+        @NotfisColumn("name")
+        String getName() {
+            return "Maria";
+        }
+
+        @NotfisColumn("qty")
+        int getQty() {
+            return 7;
+        }
+    }
+
+    @NotfisRecord("000")
+    static final class Header {
+        @NotfisColumn("id")
+        final String id = "000";
+        @NotfisColumn("sender")
+        final String sender;
+
+        Header(String sender) {
+            this.sender = sender;
+        }
+    }
+
+    @NotfisRecord("311")
+    static final class UnknownColumn {
+        @NotfisColumn("nope")
+        String nope;
+    }
+}
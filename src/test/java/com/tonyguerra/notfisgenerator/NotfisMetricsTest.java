@@ -0,0 +1,60 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisMetricsTest {
+
+    @Test
+    void listener_shouldReceiveStagesAndCounters() throws Exception {
+        final var metrics = new NotfisMetrics();
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.nameQtyLayout("000", "313")))
+                .withOptions(NotfisWriterOptions.defaults().withListener(metrics));
+
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        records.put("000", Arrays.asList(
+                Arrays.asList(new NotfisParam("name", "João"), new NotfisParam("qty", 12)),
+                Arrays.asList(new NotfisParam("name", "ABCDEFGHIJKLMNOP"), new NotfisParam("qty", 12345))));
+        records.put("313", Arrays.asList(
+                Arrays.asList(new NotfisParam("name", "ABC"), new NotfisParam("qty", 1))));
+
+        final var out = new ByteArrayOutputStream();
+        writer.writeFileToStream(new NotfisPayload(records), out);
+
+        for (final NotfisStage stage : NotfisStage.values()) {
+            assertEquals(1, metrics.getStageCount(stage));
+        }
+        assertTrue(metrics.getStagePercentileNanos(NotfisStage.RENDERING, 99) > 0);
+        assertEquals(2, metrics.getRecordCount("000"));
+        assertEquals(1, metrics.getRecordCount("313"));
+        assertEquals(out.size(), metrics.getBytesWritten());
+        assertEquals(1, metrics.getFieldsSanitized()); // "João"
+        assertEquals(2, metrics.getFieldsTruncated()); // nome com 16 e qty com 5
+        assertEquals(0, metrics.getValidationFailures());
+    }
+
+    @Test
+    void listener_shouldCountValidationFailures() throws Exception {
+        final var metrics = new NotfisMetrics();
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.nameQtyLayout("000", "313")))
+                .withOptions(NotfisWriterOptions.defaults().withListener(metrics));
+
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        records.put("000", Arrays.asList(Arrays.asList(new NotfisParam("name", "ABC"))));
+
+        assertThrows(NotfisException.class,
+                () -> writer.writeFileToStream(new NotfisPayload(records), new ByteArrayOutputStream()));
+
+        assertEquals(1, metrics.getValidationFailures());
+        assertEquals(0, metrics.getStageCount(NotfisStage.RENDERING));
+    }
+}
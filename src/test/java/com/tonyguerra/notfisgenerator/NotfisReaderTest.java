@@ -0,0 +1,68 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class NotfisReaderTest {
+
+    @Test
+    void records_shouldReadBackGeneratedFile(@TempDir Path dir) throws Exception {
+        final var layout = NotfisLayouts.get(NotfisType.VERSION31);
+        final var file = dir.resolve("notfis.txt");
+        new NotfisWriter(NotfisType.VERSION31).writeFile(NotfisTestData.fullPayload(layout, 1), file);
+
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+
+        // janela pequena para forçar linhas atravessando o limite do mapeamento
+        try (var reader = NotfisReader.open(file, layout, 1000)) {
+            final List<NotfisRecordView> records = reader.records().collect(Collectors.toList());
+
+            assertEquals(lines.size(), records.size());
+            for (int i = 0; i < records.size(); i++) {
+                final var record = records.get(i);
+                assertEquals(i + 1, record.getLineNumber());
+                assertEquals(lines.get(i), record.getRawLine());
+                assertEquals(lines.get(i).substring(0, 3), record.getIdentifier());
+                assertNotNull(record.getLayout());
+            }
+
+            final var first313 = records.stream().filter(r -> r.getRegistration() == 313).findFirst().get();
+            assertEquals(313, first313.getLong("IDENTIFICADOR DE REGISTRO"));
+            assertEquals("V1L0F1", first313.getString("NUM. ROMANEIO/COLETA.RESUMO DE CARGA"));
+        }
+    }
+
+    @Test
+    void records_shouldHandleCrLfShortLinesAndUnknownIdentifiers(@TempDir Path dir) throws Exception {
+        final var layout = NotfisLayouts.get(NotfisType.VERSION31);
+        final var file = dir.resolve("carrier.txt");
+        Files.write(file, "313ROMANEIO\r\n\r\n999XYZ\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        try (var reader = NotfisReader.open(file, NotfisType.VERSION31)) {
+            final List<NotfisRecordView> records = new ArrayList<>();
+            reader.forEach(records::add);
+
+            assertEquals(2, records.size());
+
+            final var record = records.get(0);
+            assertEquals("ROMANEIO", record.getString("NUM. ROMANEIO/COLETA.RESUMO DE CARGA"));
+            assertTrue(record.isBlank("CÓDIGO DA ROTA"));
+            assertEquals(0, record.getLong("MEIO DE TRANSPORTE"));
+
+            final var unknown = records.get(1);
+            assertNull(unknown.getLayout());
+            assertEquals("999", unknown.getIdentifier());
+            assertEquals(3, unknown.getLineNumber());
+            assertThrows(IllegalStateException.class, () -> unknown.getString(0));
+        }
+    }
+}
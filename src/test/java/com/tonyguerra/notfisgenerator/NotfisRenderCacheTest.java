@@ -0,0 +1,135 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+final class NotfisRenderCacheTest {
+
+    @Test
+    void renderCache_shouldReuseRepeatedLinesWithIdenticalOutput() throws Exception {
+        final var plain = NotfisWriter.forLayout(NotfisLayout.compile(cfg()));
+        final var cache = new NotfisRenderCache(16);
+        final var cached = plain.withOptions(NotfisWriterOptions.defaults().withRenderCache(cache));
+
+        final var payload = payload(10, 1);
+        final byte[] expected = plain.writeFileToStream(payload).readAllBytes();
+        assertArrayEquals(expected, cached.writeFileToStream(payload).readAllBytes());
+
+        // 000, um 311 e dez 313 distintos; os outros nove 311 vêm do cache
+        assertEquals(9, cache.getHits());
+        assertEquals(12, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+
+        // segunda geração: tudo do cache
+        assertArrayEquals(expected, cached.writeFileToStream(payload).readAllBytes());
+        assertEquals(9 + 21, cache.getHits());
+        assertEquals(12, cache.getMisses());
+    }
+
+    @Test
+    void renderCache_shouldEvictLeastRecentlyUsedEntries() throws Exception {
+        final var plain = NotfisWriter.forLayout(NotfisLayout.compile(cfg()));
+        final var cache = new NotfisRenderCache(2);
+        final var cached = plain.withOptions(NotfisWriterOptions.defaults().withRenderCache(cache));
+
+        final var payload = payload(6, 3);
+        assertArrayEquals(plain.writeFileToStream(payload).readAllBytes(),
+                cached.writeFileToStream(payload).readAllBytes());
+        assertEquals(2, cache.size());
+        assertEquals(cache.getMisses() - 2, cache.getEvictions());
+
+        assertThrows(IllegalArgumentException.class, () -> new NotfisRenderCache(0));
+    }
+
+    @Test
+    void renderCache_shouldOnlyConsultListedRecords() throws Exception {
+        final var plain = NotfisWriter.forLayout(NotfisLayout.compile(cfg()));
+        final var cache = new NotfisRenderCache(16, "311");
+        final var cached = plain.withOptions(NotfisWriterOptions.defaults().withRenderCache(cache));
+
+        final var payload = payload(10, 1);
+        assertArrayEquals(plain.writeFileToStream(payload).readAllBytes(),
+                cached.writeFileToStream(payload).readAllBytes());
+
+        // 000 e 313 não passam pelo cache
+        assertEquals(9, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void renderCache_shouldRenderParallelChunks() throws Exception {
+        final var plain = NotfisWriter.forLayout(NotfisLayout.compile(cfg()));
+        final var cache = new NotfisRenderCache(64);
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var cached = plain.withOptions(NotfisWriterOptions.defaults()
+                    .withParallelRendering(executor, 7)
+                    .withRenderCache(cache));
+
+            final var payload = payload(200, 3);
+            final byte[] expected = plain.writeFileToStream(payload).readAllBytes();
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(expected, cached.writeFileToStream(payload).readAllBytes());
+            }
+            assertEquals(3 * 401, cache.getHits() + cache.getMisses());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void renderCache_shouldKeepSanitizationCounters() throws Exception {
+        final var sanitized = new AtomicLong();
+        final NotfisListener listener = new NotfisListener() {
+            @Override
+            public void onFieldsSanitized(long fields) {
+                sanitized.addAndGet(fields);
+            }
+        };
+        final var plain = NotfisWriter.forLayout(NotfisLayout.compile(cfg()));
+        final var cache = new NotfisRenderCache(16);
+        final var payload = payload(5, 1);
+
+        // a primeira geração sem listener não mede; a segunda renderiza de novo para medir
+        plain.withOptions(NotfisWriterOptions.defaults().withRenderCache(cache)).writeFileToStream(payload);
+        for (final NotfisWriterOptions options : List.of(NotfisWriterOptions.defaults().withListener(listener),
+                NotfisWriterOptions.defaults().withListener(listener).withRenderCache(cache),
+                NotfisWriterOptions.defaults().withListener(listener).withRenderCache(cache))) {
+            sanitized.set(0);
+            plain.withOptions(options).writeFileToStream(payload);
+            assertEquals(5, sanitized.get());
+        }
+    }
+
+    // ---------------- helpers ----------------
+
+    /**
+     * {@code invoices} notas (313), cada uma com um 311 de nome acentuado
+     * escolhido entre {@code shippers} embarcadores.
+     */
+    private static NotfisPayload payload(int invoices, int shippers) {
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        records.put("000", Arrays.asList(Arrays.asList(new NotfisParam("id", 0), new NotfisParam("value", "H"))));
+
+        final List<List<NotfisParam>> shipperLines = new ArrayList<>();
+        final List<List<NotfisParam>> invoiceLines = new ArrayList<>();
+        for (int i = 0; i < invoices; i++) {
+            shipperLines.add(Arrays.asList(new NotfisParam("id", 311),
+                    new NotfisParam("value", "João " + (i % shippers))));
+            invoiceLines.add(Arrays.asList(new NotfisParam("id", 313), new NotfisParam("value", "NF" + i)));
+        }
+        records.put("311", shipperLines);
+        records.put("313", invoiceLines);
+        return new NotfisPayload(records);
+    }
+
+    private static Map<String, List<NotfisConfigField>> cfg() {
+        return NotfisTestData.idValueLayout(10, "000", "311", "313");
+    }
+}
@@ -0,0 +1,127 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisSessionTest {
+
+    @Test
+    void session_shouldAppendBatchesAndResumeFromCheckpoint(@TempDir Path dir) throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.nameQtyLayout("000")));
+        final Path file = dir.resolve("notfis.txt");
+
+        try (var session = writer.openSession(file, 2)) {
+            session.append(batch("A", 1));
+            session.append(batch("B", 2)); // 2 linhas: grava checkpoint
+            assertEquals(2, session.getCheckpoint().getLineCount());
+
+            session.append(batch("C", 3)); // sem checkpoint ainda
+            assertEquals(3, session.getLineCount());
+            assertEquals(2, session.getCheckpoint().getLineCount());
+        }
+
+        // simula queda: checkpoint em 3 linhas, lixo escrito depois dele
+        Files.write(file, "LIXO PARCIAL".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+        try (var session = writer.openSession(file, 2)) {
+            final var checkpoint = session.getCheckpoint();
+            assertEquals(3, checkpoint.getLineCount());
+            assertEquals(3 * 14, checkpoint.getByteOffset());
+            assertEquals(3, checkpoint.getRecordCount("000"));
+
+            session.append(batch("D", 4));
+            assertThrows(NotfisException.class, () -> session.append(batch(null, 5)));
+            session.complete();
+        }
+
+        assertEquals("A         001\nB         002\nC         003\nD         004\n",
+                Files.readString(file, StandardCharsets.US_ASCII));
+        assertFalse(Files.exists(NotfisSession.checkpointPath(file)));
+    }
+
+    @Test
+    void session_shouldNotOverwriteCompletedFile(@TempDir Path dir) throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.nameQtyLayout("000")));
+        final Path file = dir.resolve("notfis.txt");
+
+        try (var session = writer.openSession(file)) {
+            session.append(batch("A", 1));
+            session.complete();
+        }
+
+        assertThrows(NotfisException.class, () -> writer.openSession(file));
+        assertEquals("A         001\n", Files.readString(file, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void session_shouldRefuseAppendsAfterWriteFailure(@TempDir Path dir) throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.nameQtyLayout("000")));
+        final Path file = dir.resolve("notfis.txt");
+
+        try (var session = writer.openSession(file, 1)) {
+            session.append(batch("A", 1)); // checkpoint em 1 linha
+
+            // falha no meio da renderização do lote
+            final Object broken = new Object() {
+                @Override
+                public String toString() {
+                    throw new IllegalStateException("falha simulada");
+                }
+            };
+            final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+            records.put("000", Arrays.asList(
+                    Arrays.asList(new NotfisParam("name", "B"), new NotfisParam("qty", 2)),
+                    Arrays.asList(new NotfisParam("name", broken), new NotfisParam("qty", 3))));
+            assertThrows(IllegalStateException.class, () -> session.append(new NotfisPayload(records)));
+
+            assertThrows(NotfisException.class, () -> session.append(batch("C", 3)));
+            assertThrows(NotfisException.class, session::checkpoint);
+            assertThrows(NotfisException.class, session::complete);
+        }
+        assertTrue(Files.exists(NotfisSession.checkpointPath(file)));
+
+        try (var session = writer.openSession(file)) {
+            assertEquals(1, session.getCheckpoint().getLineCount());
+            session.append(batch("B", 2));
+            session.complete();
+        }
+        assertEquals("A         001\nB         002\n", Files.readString(file, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void session_shouldRejectFileShorterThanCheckpoint(@TempDir Path dir) throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(NotfisTestData.nameQtyLayout("000")));
+        final Path file = dir.resolve("notfis.txt");
+
+        try (var session = writer.openSession(file)) {
+            session.append(batch("A", 1));
+        }
+        Files.write(file, new byte[0]);
+
+        assertThrows(NotfisException.class, () -> writer.openSession(file));
+    }
+
+    // ---------------- helpers ----------------
+
+    private static NotfisPayload batch(String name, int qty) {
+        final List<NotfisParam> params = new ArrayList<>();
+        if (name != null) {
+            params.add(new NotfisParam("name", name));
+        }
+        params.add(new NotfisParam("qty", qty));
+
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        records.put("000", Arrays.asList(params));
+        return new NotfisPayload(records);
+    }
+}
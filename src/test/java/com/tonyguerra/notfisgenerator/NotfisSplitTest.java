@@ -0,0 +1,175 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.tonyguerra.notfisgenerator.errors.NotfisException;
+
+final class NotfisSplitTest {
+
+    @Test
+    void writeFiles_shouldRepeatHeaderAndTrailerInEachPart(@TempDir Path dir) throws Exception {
+        final var sequential = NotfisWriter.forLayout(NotfisLayout.compile(layout()));
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final var parallel = sequential.withOptions(NotfisWriterOptions.defaults().withParallelRendering(pool, 1));
+
+            for (final NotfisWriter writer : List.of(sequential, parallel)) {
+                final Path out = dir.resolve(writer == parallel ? "parallel" : "sequential");
+                final var manifest = writer.writeFiles(payload(5), out,
+                        NotfisSplit.byMaxRecords(2).withRecord("313").withTrailer("318"));
+
+                assertEquals(3, manifest.getParts().size());
+                assertEquals(Arrays.asList(2, 2, 1), recordCounts(manifest));
+                assertEquals("000H\n310A\n3130\n3140\n3131\n3141\n318T\n", read(manifest.getParts().get(0)));
+                assertEquals("000H\n310A\n3134\n3144\n318T\n", read(manifest.getParts().get(2)));
+                assertEquals(out.resolve("notfis-0002.txt"), manifest.getParts().get(1).getPath());
+                assertEquals(35 + 35 + 25, manifest.getTotalBytes());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeFiles_shouldSplitByBytes(@TempDir Path dir) throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(layout()));
+
+        final var manifest = writer.writeFiles(payload(5), dir, NotfisSplit.byMaxBytes(40).withTrailer("318").withFileName("p%d.txt"));
+        assertEquals(Arrays.asList(35L, 35L, 25L), sizes(manifest));
+        assertEquals(7, manifest.getParts().get(0).getLineCount());
+        assertTrue(Files.exists(dir.resolve("p3.txt")));
+
+        // cabeçalho + rodapé + uma nota não cabem
+        assertThrows(NotfisException.class, () -> writer.writeFiles(payload(5), dir, NotfisSplit.byMaxBytes(20).withTrailer("318")));
+        // layout próprio sem o registro das notas
+        assertThrows(NotfisException.class, () -> writer.writeFiles(payload(5), dir, NotfisSplit.byMaxRecords(2)));
+    }
+
+    @Test
+    void withFileName_shouldRequireDistinctNamePerPart() {
+        final var split = NotfisSplit.byMaxRecords(1);
+
+        assertEquals("parte-7.txt", String.format(split.withFileName("parte-%d.txt").getFileName(), 7));
+        assertThrows(IllegalArgumentException.class, () -> split.withFileName("notfis.txt"));
+        assertThrows(IllegalArgumentException.class, () -> split.withFileName("notfis-%s-%s.txt"));
+        assertThrows(IllegalArgumentException.class, () -> split.withFileName(""));
+    }
+
+    @Test
+    void writeFiles_shouldUseInvoiceRecordOfEachVersion(@TempDir Path dir) throws Exception {
+        for (final NotfisType type : NotfisType.values()) {
+            final var writer = new NotfisWriter(type);
+            final var payload = invoicesPayload(type, 3);
+            final String[] whole = new String(writer.writeFileToStream(payload).readAllBytes(),
+                    StandardCharsets.US_ASCII).split("\n");
+            final String trailer = whole[whole.length - 1];
+
+            final var manifest = writer.writeFiles(payload, dir.resolve(type.name()), NotfisSplit.byMaxRecords(1));
+            assertEquals(3, manifest.getParts().size());
+            for (final var part : manifest.getParts()) {
+                assertEquals(1, part.getRecordCount());
+                assertEquals(part.getBytes(), Files.size(part.getPath()));
+                assertTrue(read(part).startsWith(whole[0] + "\n"));
+                assertTrue(read(part).endsWith(trailer + "\n"));
+            }
+        }
+    }
+
+    @Test
+    void writeFiles_shouldNotRepeatUniqueInvoiceRecords(@TempDir Path dir) throws Exception {
+        final var writer = NotfisWriter.forLayout(NotfisLayout.compile(layout()));
+        final var payload = payload(4);
+        payload.getRecords().put("333", Arrays.asList(line(333, "X")));
+
+        // o 333 de uma única nota não pode ir para todas as partes
+        assertThrows(NotfisException.class, () -> writer.writeFiles(payload, dir,
+                NotfisSplit.byMaxRecords(2).withRecord("313").withTrailer("318")));
+
+        // sem o 318 como rodapé, ele também é um registro único
+        assertThrows(NotfisException.class, () -> writer.writeFiles(payload(4), dir,
+                NotfisSplit.byMaxRecords(2).withRecord("313")));
+
+        // numa parte só não há o que dividir
+        final var manifest = writer.writeFiles(payload, dir,
+                NotfisSplit.byMaxRecords(4).withRecord("313").withTrailer("318"));
+        assertEquals(1, manifest.getParts().size());
+        assertEquals(new String(writer.writeFileToStream(payload).readAllBytes(), StandardCharsets.US_ASCII),
+                read(manifest.getParts().get(0)));
+    }
+
+    // ---------------- helpers ----------------
+
+    /**
+     * Um cabeçalho e um rodapé e {@code invoices} notas, cada uma com uma
+     * linha de cada registro da nota (313–317/333 na 3.1, 505–515 na 5.0).
+     */
+    private static NotfisPayload invoicesPayload(NotfisType type, int invoices) throws Exception {
+        final var full = NotfisTestData.fullPayload(NotfisLayouts.get(type), 1).getRecords();
+        final int first = type == NotfisType.VERSION31 ? 313 : 505;
+        final int last = type == NotfisType.VERSION31 ? 317 : 515;
+
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        for (final var entry : full.entrySet()) {
+            final int registration = Integer.parseInt(entry.getKey());
+            final boolean invoice = registration >= first && registration <= last || registration == 333;
+            records.put(entry.getKey(), Collections.nCopies(invoice ? invoices : 1, entry.getValue().get(0)));
+        }
+        return new NotfisPayload(records);
+    }
+
+    private static List<Integer> recordCounts(NotfisManifest manifest) {
+        final List<Integer> counts = new ArrayList<>();
+        for (final var part : manifest.getParts()) {
+            counts.add(part.getRecordCount());
+        }
+        return counts;
+    }
+
+    private static List<Long> sizes(NotfisManifest manifest) {
+        final List<Long> sizes = new ArrayList<>();
+        for (final var part : manifest.getParts()) {
+            sizes.add(part.getBytes());
+        }
+        return sizes;
+    }
+
+    private static String read(NotfisManifest.Part part) throws Exception {
+        return new String(Files.readAllBytes(part.getPath()), StandardCharsets.US_ASCII);
+    }
+
+    private static NotfisPayload payload(int invoices) {
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+        records.put("000", Arrays.asList(line(0, "H")));
+        records.put("310", Arrays.asList(line(310, "A")));
+        records.put("318", Arrays.asList(line(318, "T")));
+
+        final List<List<NotfisParam>> invoicesLines = new ArrayList<>();
+        final List<List<NotfisParam>> items = new ArrayList<>();
+        for (int i = 0; i < invoices; i++) {
+            invoicesLines.add(line(313, String.valueOf(i)));
+            items.add(line(314, String.valueOf(i)));
+        }
+        records.put("313", invoicesLines);
+        records.put("314", items);
+        return new NotfisPayload(records);
+    }
+
+    private static List<NotfisParam> line(int id, String value) {
+        return Arrays.asList(new NotfisParam("id", id), new NotfisParam("value", value));
+    }
+
+    private static Map<String, List<NotfisConfigField>> layout() {
+        return NotfisTestData.idValueLayout(1, "000", "310", "313", "314", "318", "333");
+    }
+}
@@ -0,0 +1,91 @@
+package com.tonyguerra.notfisgenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class NotfisTestData {
+
+    private NotfisTestData() {
+    }
+
+    /**
+     * Preenche todos os campos de todos os registros do layout, com algumas
+     * linhas repetidas por registro para exercitar a ordenação. O primeiro
+     * campo recebe o próprio identificador do registro.
+     */
+    static NotfisPayload fullPayload(NotfisLayout layout, int seed) {
+        final Map<String, List<List<NotfisParam>>> records = new HashMap<>();
+
+        for (final String identifier : layout.getIdentifiers()) {
+            final var record = layout.getRecord(identifier);
+            final int count = identifier.equals("000") ? 1 : 1 + ((seed + identifier.hashCode()) & 3);
+
+            final List<List<NotfisParam>> lines = new ArrayList<>();
+            for (int l = 0; l < count; l++) {
+                final List<NotfisParam> params = new ArrayList<>();
+                for (int f = 0; f < record.getFieldCount(); f++) {
+                    final Object value = f == 0
+                            ? identifier
+                            : record.getFieldFormat(f) == NotfisFieldType.NUMERIC
+                            ? (Object) (long) (seed * 1000 + l * 10 + f)
+                            : "V" + seed + "L" + l + "F" + f;
+                    params.add(new NotfisParam(record.getFieldName(f), value));
+                }
+                lines.add(params);
+            }
+            records.put(identifier, lines);
+        }
+
+        return new NotfisPayload(records);
+    }
+
+    /**
+     * Layout mínimo: cada identificador com "name" (A, 1-10) e "qty" (N,
+     * 11-13), 14 bytes por linha com o terminador.
+     */
+    static Map<String, List<NotfisConfigField>> nameQtyLayout(String... identifiers) {
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        for (final String identifier : identifiers) {
+            cfg.put(identifier, Arrays.asList(
+                    new NotfisConfigField("name", NotfisFieldType.ALPHANUMERIC, (short) 1, (short) 10, true),
+                    new NotfisConfigField("qty", NotfisFieldType.NUMERIC, (short) 11, (short) 3, true)));
+        }
+        return cfg;
+    }
+
+    /**
+     * 000 com "id"/"sender" e 311 com "id", "name", "qty" e "weight"
+     * (opcional, 2 casas decimais).
+     */
+    static Map<String, List<NotfisConfigField>> shipperLayout() {
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        cfg.put("000", Arrays.asList(
+                new NotfisConfigField("id", NotfisFieldType.NUMERIC, (short) 1, (short) 3, true),
+                new NotfisConfigField("sender", NotfisFieldType.ALPHANUMERIC, (short) 4, (short) 5, true)));
+        cfg.put("311", Arrays.asList(
+                new NotfisConfigField("id", NotfisFieldType.NUMERIC, (short) 1, (short) 3, true),
+                new NotfisConfigField("name", NotfisFieldType.ALPHANUMERIC, (short) 4, (short) 10, true),
+                new NotfisConfigField("qty", NotfisFieldType.NUMERIC, (short) 14, (short) 3, true),
+                new NotfisConfigField("weight", NotfisFieldType.NUMERIC, (short) 17, (short) 4, false,
+                        (short) 2)));
+        return cfg;
+    }
+
+    /**
+     * Cada identificador com "id" (N, 1-3) e "value" (A, a partir da posição
+     * 4, com {@code valueSize} bytes).
+     */
+    static Map<String, List<NotfisConfigField>> idValueLayout(int valueSize, String... identifiers) {
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        for (final String identifier : identifiers) {
+            cfg.put(identifier, Arrays.asList(
+                    new NotfisConfigField("id", NotfisFieldType.NUMERIC, (short) 1, (short) 3, true),
+                    new NotfisConfigField("value", NotfisFieldType.ALPHANUMERIC, (short) 4, (short) valueSize,
+                            true)));
+        }
+        return cfg;
+    }
+}
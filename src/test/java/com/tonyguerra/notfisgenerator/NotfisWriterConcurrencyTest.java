@@ -0,0 +1,162 @@
+package com.tonyguerra.notfisgenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class NotfisWriterConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int TASKS = 200;
+
+    @Test
+    void sharedWriter_shouldProduceIdenticalOutputAcrossThreads() throws Exception {
+        final var writer = new NotfisWriter(NotfisType.VERSION31);
+        final var layout = NotfisLayouts.get(NotfisType.VERSION31);
+
+        final List<NotfisPayload> payloads = new ArrayList<>();
+        final List<byte[]> expected = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            final var payload = NotfisTestData.fullPayload(layout, p);
+            payloads.add(payload);
+            expected.add(render(writer, payload));
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            final var start = new CountDownLatch(1);
+            final List<Future<Boolean>> results = new ArrayList<>();
+
+            for (int t = 0; t < TASKS; t++) {
+                final int index = t % payloads.size();
+                final Callable<Boolean> task = () -> {
+                    start.await();
+                    return java.util.Arrays.equals(expected.get(index), render(writer, payloads.get(index)));
+                };
+                results.add(pool.submit(task));
+            }
+
+            start.countDown();
+
+            for (final Future<Boolean> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void writersPerThread_shouldShareTheSameLayout() throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<NotfisLayout>> results = new ArrayList<>();
+            for (int t = 0; t < TASKS; t++) {
+                results.add(pool.submit(() -> NotfisLayouts.get(NotfisType.VERSION50)));
+            }
+
+            final NotfisLayout first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (final Future<NotfisLayout> result : results) {
+                assertSame(first, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelRendering_shouldMatchSequentialOutput() throws Exception {
+        final var sequential = new NotfisWriter(NotfisType.VERSION50);
+        final var layout = NotfisLayouts.get(NotfisType.VERSION50);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final var parallel = sequential.withOptions(
+                    NotfisWriterOptions.defaults().withParallelRendering(pool, 3));
+
+            for (int seed = 0; seed < 4; seed++) {
+                final var payload = NotfisTestData.fullPayload(layout, seed);
+                assertArrayEquals(render(sequential, payload), render(parallel, payload));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void positionalOutputs_shouldMatchStreamOutputAndComputedSize(@TempDir Path dir) throws Exception {
+        final var sequential = new NotfisWriter(NotfisType.VERSION50);
+        final var layout = NotfisLayouts.get(NotfisType.VERSION50);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final var parallel = sequential.withOptions(NotfisWriterOptions.defaults()
+                    .withParallelRendering(pool, 3)
+                    .withLineTerminator(NotfisLineTerminator.CRLF));
+            final var crlf = sequential.withOptions(NotfisWriterOptions.defaults()
+                    .withLineTerminator(NotfisLineTerminator.CRLF));
+
+            for (final NotfisWriter writer : List.of(sequential, parallel)) {
+                final var payload = NotfisTestData.fullPayload(layout, 7);
+                final byte[] expected = render(writer == parallel ? crlf : sequential, payload);
+
+                assertEquals(expected.length, writer.computeSize(payload));
+                assertArrayEquals(expected, writer.writeFileToStream(payload).readAllBytes());
+
+                final Path file = dir.resolve("notfis.txt");
+                Files.write(file, new byte[expected.length * 2]); // sobrescreve arquivo maior
+                writer.writeFile(payload, file);
+                assertArrayEquals(expected, Files.readAllBytes(file));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void gzipOutput_shouldDecompressToPlainOutput() throws Exception {
+        final var sequential = new NotfisWriter(NotfisType.VERSION31);
+        final var layout = NotfisLayouts.get(NotfisType.VERSION31);
+        final var payload = NotfisTestData.fullPayload(layout, 3);
+        final byte[] expected = render(sequential, payload);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final var parallel = sequential.withOptions(
+                    NotfisWriterOptions.defaults().withParallelRendering(pool, 2));
+
+            for (final NotfisWriter writer : List.of(sequential, parallel)) {
+                final var out = new ByteArrayOutputStream();
+                writer.writeFileToGzipStream(payload, out);
+
+                try (var in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                    assertArrayEquals(expected, in.readAllBytes());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // ---------------- helpers ----------------
+
+    private static byte[] render(NotfisWriter writer, NotfisPayload payload) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        writer.writeFileToStream(payload, out);
+        return out.toByteArray();
+    }
+}
@@ -2,11 +2,18 @@ package com.tonyguerra.notfisgenerator;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.tonyguerra.notfisgenerator.errors.NotfisException;
 
@@ -25,8 +32,8 @@ final class NotfisWriterTest {
         final String out = read(writer.writeFileToStream(payload));
 
         // name: pos 1 size 10 => "ABC "
-        // qty : pos 11 size 3 => "12 "
-        assertEquals("ABC       12 \n", out);
+        // qty : pos 11 size 3 => "012" (numérico: à direita, zeros à esquerda)
+        assertEquals("ABC       012\n", out);
     }
 
     @Test
@@ -75,8 +82,8 @@ final class NotfisWriterTest {
 
         final String out = read(writer.writeFileToStream(payload));
 
-        // 12.7 -> 13
-        assertEquals("13  \n", out);
+        // 12.7 -> 13 -> "0013"
+        assertEquals("0013\n", out);
     }
 
     @Test
@@ -95,11 +102,10 @@ final class NotfisWriterTest {
 
         final String out = read(writer.writeFileToStream(payload));
 
-        // Sanitização do seu código:
-        // - remove não-ASCII (ã, áéíóú, ç)
-        // - remove tudo que não seja [a-zA-Z0-9\s] (tira !@# e '-')
-        // Resultado esperado: "Joo da Silva " ... (pode ter espaços no fim por size 30)
-        assertTrue(out.startsWith("Joo da Silva"));
+        // Sanitização:
+        // - acentos viram a letra base (ã -> a, áéíóú -> aeiou, ç -> c)
+        // - remove tudo que não seja letra, dígito ou espaço (tira !@# e '-')
+        assertEquals("Joao da Silvaaeiou c          \n", out);
         assertTrue(out.endsWith("\n"));
         assertFalse(out.contains("!"));
         assertFalse(out.contains("@"));
@@ -107,6 +113,273 @@ final class NotfisWriterTest {
         assertFalse(out.contains("-"));
     }
 
+    @Test
+    void writeFileToStream_shouldWriteDirectlyToOutputStream() throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final var payload = payload000(
+                Arrays.asList(
+                        new NotfisParam("name", "ABC"),
+                        new NotfisParam("qty", 12)));
+
+        final var out = new ByteArrayOutputStream();
+        writer.writeFileToStream(payload, out);
+
+        assertEquals("ABC       012\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeFile_shouldCreateFileAtPath(@TempDir Path dir) throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final var payload = payload000(
+                Arrays.asList(
+                        new NotfisParam("name", "ABC"),
+                        new NotfisParam("qty", 12)));
+
+        final Path file = dir.resolve("notfis.txt");
+        writer.writeFile(payload, file);
+
+        assertEquals("ABC       012\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeFileToStream_shouldPadOptionalFieldsToRecordWidth() throws Exception {
+        final var writer = new NotfisWriter(null);
+
+        final Map<String, List<NotfisConfigField>> cfg = cfg000_nameQty();
+        cfg.put("000", Arrays.asList(
+                new NotfisConfigField("name", NotfisFieldType.ALPHANUMERIC, (short) 1, (short) 10, true),
+                new NotfisConfigField("qty", NotfisFieldType.NUMERIC, (short) 11, (short) 3, true),
+                new NotfisConfigField("filler", NotfisFieldType.ALPHANUMERIC, (short) 14, (short) 5, false)));
+        writer.setConfigMapForTests(cfg);
+
+        final var payload = payload000(
+                Arrays.asList(
+                        new NotfisParam("name", "ABCDEFGHIJKL"),
+                        new NotfisParam("qty", 12)));
+
+        final String out = read(writer.writeFileToStream(payload));
+
+        // name truncado em 10, filler ausente mas preenchido com espaços
+        assertEquals("ABCDEFGHIJ012     \n", out);
+    }
+
+    @Test
+    void compile_shouldPrecomputeRecordWidthAndOffsets() throws Exception {
+        final var layout = NotfisLayout.compile(cfg000_nameQty());
+        final var record = layout.getRecord("000");
+
+        assertEquals(13, record.getWidth());
+        assertEquals(2, record.getFieldCount());
+        assertEquals(10, record.getFieldOffset(1));
+        assertEquals(3, record.getFieldSize(1));
+        assertEquals(0, record.getRegistration());
+        assertNull(layout.getRecord("999"));
+    }
+
+    @Test
+    void writeFileToStream_shouldBindParamsBySlotIgnoringUnknownAndDuplicates() throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final var payload = payload000(
+                Arrays.asList(
+                        new NotfisParam("qty", 7),
+                        new NotfisParam("unknown", "ZZZ"),
+                        new NotfisParam("name", "ABC"),
+                        new NotfisParam("name", "DEF")));
+
+        final String out = read(writer.writeFileToStream(payload));
+
+        assertEquals("ABC       007\n", out);
+    }
+
+    @Test
+    void slotOf_shouldResolveFieldIndexByName() throws Exception {
+        final var record = NotfisLayout.compile(cfg000_nameQty()).getRecord("000");
+
+        assertEquals(0, record.slotOf("name"));
+        assertEquals(1, record.slotOf("qty"));
+        assertEquals(-1, record.slotOf("unknown"));
+        assertEquals(-1, record.slotOf(null));
+    }
+
+    @Test
+    void writeFileToStream_shouldReplaceLineBreaksWithSpaces() throws Exception {
+        final var writer = new NotfisWriter(null);
+
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        cfg.put("000", Arrays.asList(
+                new NotfisConfigField("name", NotfisFieldType.ALPHANUMERIC, (short) 1, (short) 8, true)));
+        writer.setConfigMapForTests(cfg);
+
+        final var payload = payload000(
+                Arrays.asList(new NotfisParam("name", "Rua\nA\tº1")));
+
+        final String out = read(writer.writeFileToStream(payload));
+
+        assertEquals("Rua A o1\n", out);
+    }
+
+    @Test
+    void writeFileToStream_shouldParseJsonPayload() throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final String json = "{\"000\": [ [ {\"name\": \"name\", \"value\": \"ABC\"},"
+                + " {\"value\": 12, \"name\": \"qty\"} ] ]}";
+
+        assertEquals("ABC       012\n", read(writer.writeFileToStream(json)));
+
+        final var out = new ByteArrayOutputStream();
+        writer.writeFileToStream(new StringReader(json), out);
+        assertEquals("ABC       012\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeFileToStream_shouldRejectJsonWithMissingMandatoryField() throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final var json = new ByteArrayInputStream(
+                "{\"000\": [ [ {\"name\": \"name\", \"value\": \"ABC\"} ] ]}".getBytes(StandardCharsets.UTF_8));
+
+        final var ex = assertThrows(NotfisException.class,
+                () -> writer.writeFileToStream(json, new ByteArrayOutputStream()));
+        assertTrue(ex.getMessage().contains("qty"));
+    }
+
+    @Test
+    void record_shouldBuildLinesEqualToParamPayload() throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final var builder = writer.record("000");
+        final List<NotfisLine> lines = new ArrayList<>();
+        lines.add(builder.set("name", "João").set("qty", 12).build());
+        lines.add(builder.set("name", "X").set("name", "ABC").set("qty", -7L).build());
+
+        assertEquals("Joao      012\nABC       -07\n", read(writer.writeFileToStream(lines)));
+        assertEquals("ABC", lines.get(1).getField().get(0).getValue());
+    }
+
+    @Test
+    void record_shouldValidateFieldsAndMandatory() throws Exception {
+        final var writer = new NotfisWriter(null);
+        writer.setConfigMapForTests(cfg000_nameQty());
+
+        final var builder = writer.record("000");
+        assertThrows(NotfisException.class, () -> builder.set("unknown", 1));
+
+        final var ex = assertThrows(NotfisException.class, () -> builder.set("name", "ABC").build());
+        assertTrue(ex.getMessage().contains("qty"));
+
+        assertThrows(NotfisException.class, () -> writer.record("999"));
+    }
+
+    @Test
+    void writeFileToStream_shouldApplyImpliedDecimalsWithoutDoublePrecisionLoss() throws Exception {
+        final var writer = new NotfisWriter(null);
+
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        cfg.put("000", Arrays.asList(
+                new NotfisConfigField("valor", NotfisFieldType.NUMERIC, (short) 1, (short) 15, true, (short) 2),
+                new NotfisConfigField("peso", NotfisFieldType.NUMERIC, (short) 16, (short) 7, true, (short) 2),
+                new NotfisConfigField("texto", NotfisFieldType.NUMERIC, (short) 23, (short) 5, true)));
+        writer.setConfigMapForTests(cfg);
+
+        final var payload = payload000(
+                Arrays.asList(
+                        new NotfisParam("valor", new BigDecimal("9999999999999.99")),
+                        new NotfisParam("peso", 12.345),
+                        new NotfisParam("texto", "12-3")));
+
+        // 12.345 -> 1235 (HALF_UP); texto numérico também é alinhado à direita
+        assertEquals("999999999999999000123500123\n", read(writer.writeFileToStream(payload)));
+
+        final var builder = writer.record("000");
+        final var line = builder.set("valor", 12L)
+                .set("peso", new BigDecimal("0.5"))
+                .set("texto", 7)
+                .build();
+        // 12L com 2 casas -> 1200; 0.5 -> 50
+        assertEquals("000000000001200" + "0000050" + "00007" + "\n",
+                read(writer.writeFileToStream(Arrays.asList(line))));
+    }
+
+    @Test
+    void writeFileToStream_shouldReadJsonDecimalsExactly() throws Exception {
+        final var writer = new NotfisWriter(null);
+
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        cfg.put("000", Arrays.asList(
+                new NotfisConfigField("valor", NotfisFieldType.NUMERIC, (short) 1, (short) 18, true, (short) 2)));
+        writer.setConfigMapForTests(cfg);
+
+        // como double, 9999999999999999.99 viraria 10000000000000000.00
+        final String json = "{\"000\": [ [ {\"name\": \"valor\", \"value\": 9999999999999999.99} ] ] }";
+        assertEquals("999999999999999999\n", read(writer.writeFileToStream(json)));
+    }
+
+    @Test
+    void writeFileToStream_shouldScaleDecimalText() throws Exception {
+        final var writer = new NotfisWriter(null);
+
+        final Map<String, List<NotfisConfigField>> cfg = new HashMap<>();
+        cfg.put("000", Arrays.asList(
+                new NotfisConfigField("valor", NotfisFieldType.NUMERIC, (short) 1, (short) 15, true, (short) 2),
+                new NotfisConfigField("peso", NotfisFieldType.NUMERIC, (short) 16, (short) 7, true, (short) 2)));
+        writer.setConfigMapForTests(cfg);
+
+        // texto e número com o mesmo valor geram a mesma saída
+        final String expected = "000000000001250" + "0123400" + "\n";
+        assertEquals(expected, read(writer.writeFileToStream(payload000(Arrays.asList(
+                new NotfisParam("valor", "12.5"),
+                new NotfisParam("peso", "1234"))))));
+        assertEquals(expected, read(writer.writeFileToStream(payload000(Arrays.asList(
+                new NotfisParam("valor", 12.5),
+                new NotfisParam("peso", 1234))))));
+
+        final String json = "{\"000\": [ [ {\"name\": \"valor\", \"value\": \"12.5\"},"
+                + " {\"name\": \"peso\", \"value\": \"1234\"} ] ] }";
+        assertEquals(expected, read(writer.writeFileToStream(json)));
+
+        final var line = writer.record("000").set("valor", "12.5").set("peso", "1234").build();
+        assertEquals(expected, read(writer.writeFileToStream(Arrays.asList(line))));
+
+        assertThrows(NotfisException.class, () -> writer.writeFileToStream(payload000(Arrays.asList(
+                new NotfisParam("valor", "12,5"),
+                new NotfisParam("peso", "1")))));
+        assertThrows(NotfisException.class, () -> writer.record("000").set("valor", "R$ 1"));
+    }
+
+    @Test
+    void writeFileToStream_shouldHonorCharsetAndLineTerminator() throws Exception {
+        final var base = new NotfisWriter(null);
+        base.setConfigMapForTests(cfg000_nameQty());
+
+        final var payload = payload000(
+                Arrays.asList(
+                        new NotfisParam("name", "João Ç"),
+                        new NotfisParam("qty", 1)));
+
+        final var crlf = base.withOptions(NotfisWriterOptions.defaults()
+                .withLineTerminator(NotfisLineTerminator.CRLF));
+        assertEquals("Joao C    001\r\n", read(crlf.writeFileToStream(payload)));
+
+        final var latin1 = base.withOptions(NotfisWriterOptions.defaults()
+                .withCharset(StandardCharsets.ISO_8859_1));
+        final byte[] bytes = latin1.writeFileToStream(payload).readAllBytes();
+        assertEquals(14, bytes.length);
+        assertEquals("João Ç    001\n", new String(bytes, StandardCharsets.ISO_8859_1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> NotfisWriterOptions.defaults().withCharset(StandardCharsets.UTF_16));
+    }
+
     @Test
     void orderLines_shouldPutLowestRegistrationFirst_andIntercalateRepeated() {
         // Constrói linhas: 000 (prioridade), 311x2, 312x2, 400 único
@@ -134,6 +407,41 @@ final class NotfisWriterTest {
         }
     }
 
+    @Test
+    void orderLines_shouldProduceDeterministicDocumentedOrder() {
+        final List<NotfisLine> lines = new ArrayList<>();
+        lines.add(line("313"));
+        lines.add(line("400"));
+        lines.add(line("311"));
+        lines.add(line("312"));
+        lines.add(line("313"));
+        lines.add(line("000"));
+        lines.add(line("310"));
+        lines.add(line("311"));
+
+        final var ordered = NotfisLine.orderLines(lines);
+
+        final int[] registrations = ordered.stream().mapToInt(NotfisLine::getRegistration).toArray();
+        assertArrayEquals(new int[] { 0, 310, 311, 313, 311, 313, 312, 400 }, registrations);
+
+        // dentro do mesmo registro, mantém a ordem de entrada
+        assertSame(lines.get(2), ordered.get(2));
+        assertSame(lines.get(7), ordered.get(4));
+    }
+
+    @Test
+    void orderLines_shouldMatchLegacyForSingleRepeatedRegistration() {
+        final List<NotfisLine> lines = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            lines.add(line("313"));
+        }
+        lines.add(line("318"));
+        lines.add(line("310"));
+        lines.add(line("000"));
+
+        assertEquals(NotfisLine.orderLinesLegacy(lines), NotfisLine.orderLines(lines));
+    }
+
     // ---------------- helpers ----------------
 
     private static Map<String, List<NotfisConfigField>> cfg000_nameQty() {